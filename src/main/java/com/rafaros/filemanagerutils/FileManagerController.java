@@ -1,7 +1,16 @@
 package com.rafaros.filemanagerutils;
 
+import com.rafaros.filemanagerutils.service.DirectoryIndex;
+import com.rafaros.filemanagerutils.service.DirectoryScanner;
+import com.rafaros.filemanagerutils.service.ExtensionClassifier;
+import com.rafaros.filemanagerutils.service.FileListWriter;
+import com.rafaros.filemanagerutils.service.NameReservationService;
 import com.rafaros.filemanagerutils.service.FileExtensionService;
 import com.rafaros.filemanagerutils.service.MessageService;
+import com.rafaros.filemanagerutils.service.MoveJournal;
+import com.rafaros.filemanagerutils.service.JpegEncoder;
+import com.rafaros.filemanagerutils.service.RgbFlattener;
+import com.rafaros.filemanagerutils.service.ShuffledListGenerator;
 import com.rafaros.filemanagerutils.service.StrateMovingService;
 import javafx.animation.*;
 import javafx.application.Platform;
@@ -124,24 +133,14 @@ public class FileManagerController {
                 return;
             }
 
-            int width = inputImage.getWidth();
-            int height = inputImage.getHeight();
+            // Compose l'image PNG sur fond blanc dans un tampon TYPE_INT_RGB réutilisé
+            BufferedImage convertedImage = RgbFlattener.flattenOnWhite(inputImage);
 
-            // Crée directement un BufferedImage TYPE_INT_RGB pour JPG
-            BufferedImage convertedImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
-
-            // Graphics2D avec rendu rapide et fond blanc
-            Graphics2D g2d = convertedImage.createGraphics();
-            g2d.setBackground(Color.WHITE); // définit le fond
-            g2d.clearRect(0, 0, width, height); // remplit le fond en blanc
-
-            // Dessine l'image PNG sur le fond blanc
-            g2d.drawImage(inputImage, 0, 0, null);
-            g2d.dispose();
-
-            // Écriture optimisée en JPG
-            try (OutputStream os = new BufferedOutputStream(new FileOutputStream(outputFile))) {
-                ImageIO.write(convertedImage, "jpg", os);
+            // Écriture JPG (profil magick), puis tampon rendu à la réserve
+            try {
+                JpegEncoder.write(convertedImage, outputFile, true);
+            } finally {
+                RgbFlattener.release(convertedImage);
             }
         }
 
@@ -219,6 +218,8 @@ public class FileManagerController {
     /*         FILE LIST GENERATION       */
     /* ================================== */
     @FXML private TextField restrictionField;
+    @FXML private TextField seedField;
+    @FXML private TextField shardsField;
     @FXML private Label locationLabel;
     @FXML private Label statusLabel;
 
@@ -238,51 +239,70 @@ public class FileManagerController {
         if (selectedDirectory2 == null) { statusLabel.setText("Status: Please select a folder first!"); return; }
         String restriction = restrictionField.getText() != null ? restrictionField.getText().trim() : "";
         boolean hasRestriction = !restriction.isEmpty();
-        Path outputDir = Paths.get(selectedDirectory2.getAbsolutePath(), "fileList");
-
-        try {
-            if (!Files.exists(outputDir)) Files.createDirectories(outputDir);
-
-            List<String> filePaths = Files.walk(selectedDirectory2.toPath())
-                    .filter(Files::isRegularFile)
-                    .map(Path::toString)
-                    .filter(path -> path.matches(".*\\.(jpg|JPG|jpeg|JPEG|png|PNG|bmp|BMP|webp|WEBP|gif|GIF)$"))
-                    .filter(path -> {
-                        if (hasRestriction) {
-                            Path parentDir = Paths.get(path).getParent();
-                            return parentDir != null && parentDir.getFileName().toString().startsWith(restriction);
-                        }
-                        return true;
-                    })
-                    .collect(Collectors.toList());
-
-            if (filePaths.isEmpty()) { statusLabel.setText("Status: No matching files found."); return; }
 
-            Collections.shuffle(filePaths, new Random(System.currentTimeMillis()));
-
-            final int MAX_FILES_PER_TXT = 12_000;
-            int totalFiles = (int) Math.ceil((double) filePaths.size() / MAX_FILES_PER_TXT);
+        // graine saisie : listes reproductibles ; sinon tirée et affichée
+        String seedText = seedField.getText() != null ? seedField.getText().trim() : "";
+        long seed;
+        if (seedText.isEmpty()) seed = System.currentTimeMillis();
+        else {
+            try { seed = Long.parseLong(seedText); }
+            catch (NumberFormatException ex) { seed = seedText.hashCode(); }
+        }
 
-            for (int i = 0; i < totalFiles; i++) {
-                int start = i * MAX_FILES_PER_TXT;
-                int end = Math.min(start + MAX_FILES_PER_TXT, filePaths.size());
-                List<String> subList = filePaths.subList(start, end);
+        int shards;
+        String shardsText = shardsField.getText() != null ? shardsField.getText().trim() : "";
+        try { shards = shardsText.isEmpty() ? 0 : Integer.parseInt(shardsText); }
+        catch (NumberFormatException ex) { statusLabel.setText("Status: Shards must be a number."); return; }
+        if (shards < 0) { statusLabel.setText("Status: Shards must be a number."); return; }
 
-                String fileName = String.format("filesList_%d.txt", i + 1);
-                Path outputFile = outputDir.resolve(fileName);
+        long listSeed = seed;
+        Path root = selectedDirectory2.toPath();
+        Path outputDir = Paths.get(selectedDirectory2.getAbsolutePath(), "fileList");
+        ExtensionClassifier images = ExtensionClassifier.FILE_LIST;
 
-                try (OutputStream outputStream = Files.newOutputStream(outputFile);
-                     Writer writer = new OutputStreamWriter(outputStream, StandardCharsets.UTF_8)) {
-                    outputStream.write(new byte[]{(byte) 0xEF, (byte) 0xBB, (byte) 0xBF});
-                    for (String filePath : subList) writer.write(filePath + System.lineSeparator());
+        // parcours + mélange externe hors du thread JavaFX, mémoire bornée
+        Task<Long> task = new Task<>() {
+            @Override
+            protected Long call() throws Exception {
+                DirectoryScanner.Filter filter = (file, attrs) -> {
+                    if (!images.matches(file)) return false;
+                    if (hasRestriction) {
+                        Path parentDir = file.getParent();
+                        return parentDir != null && parentDir.getFileName().toString().startsWith(restriction);
+                    }
+                    return true;
+                };
+
+                // index de la racine : seuls les dossiers modifiés sont relistés
+                try (Stream<Path> scan = DirectoryScanner.shared().stream(root, filter, DirectoryIndex.open(root))) {
+                    Stream<String> filePaths = scan.map(Path::toString);
+                    ShuffledListGenerator generator = new ShuffledListGenerator(FileListWriter.LINES_PER_FILE, listSeed);
+                    ShuffledListGenerator.Progress progress = (message, done, total) -> {
+                        updateMessage("Status: " + message);
+                        if (total > 0) updateProgress(done, total);
+                    };
+
+                    if (shards > 0) return generator.generateShards(filePaths, outputDir, shards, progress);
+                    return (long) generator.generate(filePaths, outputDir, progress);
                 }
             }
+        };
 
-            statusLabel.setText(String.format("Status: %d randomized file(s) list generated successfully!", totalFiles));
-        } catch (IOException e) {
-            e.printStackTrace();
+        statusLabel.textProperty().bind(task.messageProperty());
+        task.setOnSucceeded(e -> {
+            statusLabel.textProperty().unbind();
+            long count = task.getValue();
+            if (count == 0) statusLabel.setText("Status: No matching files found.");
+            else if (shards > 0) statusLabel.setText(String.format("Status: %d files split into %d shard(s) (seed %d).", count, shards, listSeed));
+            else statusLabel.setText(String.format("Status: %d randomized file(s) list generated successfully! (seed %d)", count, listSeed));
+        });
+        task.setOnFailed(e -> {
+            statusLabel.textProperty().unbind();
+            task.getException().printStackTrace();
             statusLabel.setText("Status: An error occurred while generating the files list.");
-        }
+        });
+
+        new Thread(task, "files-list-task").start();
     }
 
     /* ================================== */
@@ -299,6 +319,7 @@ public class FileManagerController {
     @FXML private Button exportRecycleBinButton;
     @FXML private ProgressBar exportProgressBar;
     @FXML private ToggleButton recycleBinToggle;
+    @FXML private CheckBox binaryListCheckbox;
 
     @FXML private VBox presentationCard;
     @FXML private Tab presentationTab;
@@ -326,6 +347,61 @@ public class FileManagerController {
                     "-fx-background-color: green; -fx-text-fill: white;" :
                     "-fx-background-color: red; -fx-text-fill: white;");
         });
+
+        // opérations interrompues (journal resté sur disque)
+        Task<List<MoveJournal.Interrupted>> journals = new Task<>() {
+            @Override
+            protected List<MoveJournal.Interrupted> call() {
+                return MoveJournal.interrupted();
+            }
+        };
+        journals.setOnSucceeded(e -> journals.getValue().forEach(this::offerRecovery));
+        new Thread(journals, "journal-scan").start();
+    }
+
+    /* ---------- REPRISE APRÈS INTERRUPTION ---------- */
+
+    private void offerRecovery(MoveJournal.Interrupted job) {
+
+        ButtonType undo = new ButtonType("Undo");
+        ButtonType finish = new ButtonType("Finish");
+        ButtonType later = new ButtonType("Later", ButtonBar.ButtonData.CANCEL_CLOSE);
+
+        Alert alert = new Alert(Alert.AlertType.CONFIRMATION, "", undo, finish, later);
+        alert.setTitle("Interrupted operation");
+        alert.setHeaderText("An interrupted " + job.getOperation() + " was found");
+        alert.setContentText("Folder: " + job.getRoot() + "\n"
+                + job.getPlanned() + " planned move(s).\n\n"
+                + "Undo puts every moved file back, Finish completes the planned moves.");
+
+        Optional<ButtonType> choice = alert.showAndWait();
+        if (choice.isEmpty() || choice.get() == later) {
+            return;
+        }
+
+        boolean rollBack = choice.get() == undo;
+
+        Task<Long> task = new Task<>() {
+            @Override
+            protected Long call() throws Exception {
+                return rollBack ? job.undo() : job.replay();
+            }
+        };
+
+        task.setOnSucceeded(e -> messageService.showMessage(
+                Alert.AlertType.INFORMATION,
+                "Recovery completed",
+                task.getValue() + (rollBack ? " file(s) put back." : " file(s) moved.")));
+
+        task.setOnFailed(e -> {
+            task.getException().printStackTrace();
+            messageService.showMessage(
+                    Alert.AlertType.ERROR,
+                    "Error",
+                    "Recovery failed: " + task.getException().getMessage());
+        });
+
+        new Thread(task, "journal-recovery").start();
     }
 
     private void playPresentationAnimation() {
@@ -353,13 +429,18 @@ public class FileManagerController {
     }
 
     @FXML
-    private void handleCleanFoldersName() { strateMovingService.handleCleanFoldersName(strateStatusLabel); }
+    private void handleCleanFoldersName() {
+        strateMovingService.handleCleanFoldersName(strateStatusLabel, cleanFoldersButton, exportProgressBar);
+    }
 
     @FXML
     private void handleExportRecycleBin() { strateMovingService.handleExportRecycleBin(exportRecycleBinButton, strateStatusLabel); }
 
     @FXML
-    private void handleExportFolderList() { strateMovingService.handleExportFolderList(selectedFilesInfo); }
+    private void handleExportFolderList() {
+        strateMovingService.handleExportFolderList(selectedFilesInfo, strateStatusLabel, exportProgressBar,
+                binaryListCheckbox.isSelected());
+    }
 
     @FXML
     private void handleRecycleBinToggle() {
@@ -392,7 +473,7 @@ public class FileManagerController {
 
     /* ---------- REDUCE SUBFOLDERS ---------- */
 
-    private void reduceSubfolders(File rootFolder) {
+    private void reduceSubfolders(File rootFolder, MoveJournal journal) {
 
         File[] firstLevelFolders = rootFolder.listFiles(File::isDirectory);
 
@@ -400,14 +481,16 @@ public class FileManagerController {
             return;
         }
 
+        NameReservationService names = new NameReservationService();
+
         for (File parentFolder : firstLevelFolders) {
 
-            try (Stream<Path> stream =
-                         Files.walk(parentFolder.toPath())) {
+            try {
+
+                List<Path> files = DirectoryScanner.shared()
+                        .collect(parentFolder.toPath(), DirectoryScanner.Filter.ALL);
 
-                List<Path> files = stream
-                        .filter(Files::isRegularFile)
-                        .collect(Collectors.toList());
+                List<Path> nested = new ArrayList<>();
 
                 for (Path source : files) {
 
@@ -418,45 +501,12 @@ public class FileManagerController {
                         continue;
                     }
 
-                    String fileName = sourceFile.getName();
-
-                    Path target =
-                            parentFolder.toPath().resolve(fileName);
-
-                    /* ---------- COLLISION ---------- */
-
-                    if (Files.exists(target)) {
-
-                        String ext = getExtension(sourceFile);
-
-                        String baseName =
-                                fileName.substring(
-                                        0,
-                                        fileName.length() - ext.length()
-                                );
-
-                        int index = 1;
-
-                        while (Files.exists(target)) {
-
-                            target =
-                                    parentFolder.toPath().resolve(
-                                            baseName
-                                                    + "_"
-                                                    + index
-                                                    + ext
-                                    );
+                    nested.add(source);
+                }
 
-                            index++;
-                        }
-                    }
+                /* ---------- COLLISION : nom libre réservé en mémoire, lots journalisés ---------- */
 
-                    Files.move(
-                            source,
-                            target,
-                            StandardCopyOption.REPLACE_EXISTING
-                    );
-                }
+                names.moveAll(nested, parentFolder.toPath(), NameReservationService.Style.SUFFIX, journal);
 
             } catch (Exception e) {
                 e.printStackTrace();
@@ -496,19 +546,12 @@ public class FileManagerController {
 
         List<File> images = new ArrayList<>();
 
-        try (Stream<Path> stream = Files.walk(dir.toPath())) {
-
-            stream.filter(Files::isRegularFile)
-                    .map(Path::toFile)
-                    .filter(f -> {
-
-                        String lower = f.getName().toLowerCase();
+        try {
 
-                        return lower.endsWith(".png")
-                                || lower.endsWith(".jpg")
-                                || lower.endsWith(".jpeg");
-                    })
-                    .forEach(images::add);
+            DirectoryScanner.shared()
+                    .collect(dir.toPath(), ExtensionClassifier.SELECTION,
+                            DirectoryIndex.open(dir.toPath()))
+                    .forEach(path -> images.add(path.toFile()));
 
         } catch (Exception e) {
             e.printStackTrace();
@@ -573,13 +616,30 @@ public class FileManagerController {
             @Override
             protected Void call() throws Exception {
 
+                MoveJournal journal = MoveJournal.begin("rename", selectedDirectory.toPath());
+
+                try {
+                    rename(journal);
+                } catch (Exception e) {
+                    // journal conservé : annulation ou reprise proposée au prochain lancement
+                    journal.close();
+                    throw e;
+                }
+
+                journal.complete();
+
+                return null;
+            }
+
+            private void rename(MoveJournal journal) throws Exception {
+
                 /* ---------- REDUCE SUBFOLDERS ---------- */
 
                 if (reduceSubfoldersCheckbox.isSelected()) {
 
                     updateMessage("Reducing subfolders...");
 
-                    reduceSubfolders(selectedDirectory);
+                    reduceSubfolders(selectedDirectory, journal);
 
                     deleteEmptySubfolders(selectedDirectory);
                 }
@@ -588,22 +648,10 @@ public class FileManagerController {
 
                 /* ---------- SCAN ---------- */
 
-                try (Stream<Path> stream =
-                             Files.walk(selectedDirectory.toPath())) {
-
-                    stream.filter(Files::isRegularFile)
-                            .map(Path::toFile)
-                            .filter(f -> {
-
-                                String n =
-                                        f.getName().toLowerCase();
-
-                                return n.endsWith(".jpg")
-                                        || n.endsWith(".jpeg")
-                                        || n.endsWith(".png");
-                            })
-                            .forEach(allImages::add);
-                }
+                DirectoryScanner.shared()
+                        .collect(selectedDirectory.toPath(), ExtensionClassifier.RENAME,
+                                DirectoryIndex.open(selectedDirectory.toPath()))
+                        .forEach(path -> allImages.add(path.toFile()));
 
                 int total = allImages.size();
 
@@ -611,7 +659,7 @@ public class FileManagerController {
 
                     updateMessage("No images found");
 
-                    return null;
+                    return;
                 }
 
                 updateMessage("Found " + total + " images");
@@ -662,6 +710,10 @@ public class FileManagerController {
                 File finalContainerDirectory =
                         containerDirectory;
 
+                // listés au premier nom demandé, donc après la passe temporaire
+                NameReservationService names =
+                        new NameReservationService();
+
                 /* ---------- TRAITEMENT PAR DOSSIER ---------- */
 
                 filesByFolder.entrySet()
@@ -685,29 +737,54 @@ public class FileManagerController {
 
                             /* ---------- PASS 1 : TEMP ---------- */
 
+                            List<Path> sources =
+                                    new ArrayList<>();
+
+                            List<Path> temps =
+                                    new ArrayList<>();
+
                             for (File file : files) {
 
-                                try {
+                                String ext =
+                                        getExtension(file);
+
+                                Path temp =
+                                        file.toPath()
+                                                .resolveSibling(
+                                                        "temp_"
+                                                                + UUID.randomUUID()
+                                                                + ext
+                                                );
+
+                                sources.add(file.toPath());
 
-                                    String ext =
-                                            getExtension(file);
+                                temps.add(temp);
+
+                                extensions.put(temp, ext);
+                            }
+
+                            long firstTemp;
+
+                            try {
+                                // une synchronisation du journal pour tout le dossier
+                                firstTemp = journal.plan(sources, temps);
+                            } catch (IOException e) {
+                                e.printStackTrace();
+                                return;
+                            }
 
-                                    Path temp =
-                                            file.toPath()
-                                                    .resolveSibling(
-                                                            "temp_"
-                                                                    + UUID.randomUUID()
-                                                                    + ext
-                                                    );
+                            for (int i = 0; i < sources.size(); i++) {
+
+                                try {
 
                                     Files.move(
-                                            file.toPath(),
-                                            temp
+                                            sources.get(i),
+                                            temps.get(i)
                                     );
 
-                                    tempFiles.add(temp);
+                                    journal.committed(firstTemp + i);
 
-                                    extensions.put(temp, ext);
+                                    tempFiles.add(temps.get(i));
 
                                 } catch (Exception e) {
                                     e.printStackTrace();
@@ -718,40 +795,70 @@ public class FileManagerController {
 
                             /* ---------- PASS 2 : FINAL ---------- */
 
-                            for (Path temp : tempFiles) {
+                            Path targetFolder =
+                                    gatherInContainerCheckbox.isSelected()
+                                            ? finalContainerDirectory.toPath()
+                                            : folder;
 
-                                try {
+                            List<Path> finals =
+                                    new ArrayList<>();
 
-                                    String ext =
-                                            extensions.get(temp);
+                            long firstFinal;
 
-                                    Path targetFolder =
-                                            gatherInContainerCheckbox.isSelected()
-                                                    ? finalContainerDirectory.toPath()
-                                                    : folder;
+                            try {
 
-                                    Path target;
+                                for (Path temp : tempFiles) {
 
-                                    while (true) {
+                                    String name;
 
-                                        target =
-                                                targetFolder.resolve(
-                                                        baseName
-                                                                + "_"
-                                                                + index
-                                                                + ext
-                                                );
+                                    // noms pris relevés une fois par dossier
+                                    do {
+                                        name = baseName + "_" + index + extensions.get(temp);
+                                        index++;
+                                    } while (!names.tryReserve(targetFolder, name));
 
-                                        if (!Files.exists(target)) {
-                                            break;
-                                        }
+                                    finals.add(targetFolder.resolve(name));
+                                }
 
-                                        index++;
-                                    }
+                                firstFinal = journal.plan(tempFiles, finals);
+
+                            } catch (IOException e) {
+                                e.printStackTrace();
+                                return;
+                            }
+
+                            for (int i = 0; i < tempFiles.size(); i++) {
+
+                                Path temp = tempFiles.get(i);
+
+                                try {
+
+                                    try {
+                                        Files.move(temp, finals.get(i));
+                                        journal.committed(firstFinal + i);
 
-                                    Files.move(temp, target);
+                                    } catch (FileAlreadyExistsException taken) {
 
-                                    index++;
+                                        // créé entre-temps par un tiers : numéro suivant, journalisé seul
+                                        journal.failed(firstFinal + i);
+
+                                        while (true) {
+
+                                            String name = baseName + "_" + index + extensions.get(temp);
+                                            index++;
+
+                                            if (!names.tryReserve(targetFolder, name)) {
+                                                continue;
+                                            }
+
+                                            try {
+                                                journal.move(temp, targetFolder.resolve(name));
+                                                break;
+                                            } catch (FileAlreadyExistsException again) {
+                                                // numéro suivant
+                                            }
+                                        }
+                                    }
 
                                 } catch (Exception e) {
                                     e.printStackTrace();
@@ -774,8 +881,6 @@ public class FileManagerController {
                 updateProgress(total, total);
 
                 updateMessage("Completed ✔");
-
-                return null;
             }
         };
 
@@ -831,12 +936,11 @@ public class FileManagerController {
 
     private void deleteEmptySubfolders(File rootFolder) {
 
-        try (Stream<Path> walk = Files.walk(rootFolder.toPath())) {
+        try {
 
-            List<Path> folders = walk
-                    .filter(Files::isDirectory)
-                    .sorted(Comparator.reverseOrder())
-                    .collect(Collectors.toList());
+            // ordre inverse : les sous-dossiers avant leur parent
+            List<Path> folders = DirectoryScanner.shared().directories(rootFolder.toPath());
+            folders.sort(Comparator.reverseOrder());
 
             for (Path folder : folders) {
 
@@ -913,34 +1017,37 @@ public class FileManagerController {
         Task<Void> task = new Task<>() {
             @Override
             protected Void call() throws Exception {
-                List<Path> movedFiles = new ArrayList<>();
-                List<Path> createdDirs = new ArrayList<>();
+                Path root = distributionRootFolder.toPath();
+                MoveJournal journal = MoveJournal.begin("distribution", root);
                 try {
-                    int index = 0;
-                    while (index < totalFiles) {
-                        for (int i = 1; i <= n && index < totalFiles; i++, index++) {
-                            Path subDir = distributionRootFolder.toPath().resolve(String.valueOf(i));
+                    // fichier n° index → sous-dossier (index % n) + 1, par lots journalisés
+                    for (int from = 0; from < totalFiles; from += NameReservationService.JOURNAL_BATCH) {
+                        int to = Math.min(totalFiles, from + NameReservationService.JOURNAL_BATCH);
+                        List<Path> sources = new ArrayList<>(to - from);
+                        List<Path> targets = new ArrayList<>(to - from);
+                        for (int index = from; index < to; index++) {
+                            Path subDir = root.resolve(String.valueOf(index % n + 1));
                             if (!Files.exists(subDir)) {
+                                journal.directoryCreated(subDir);
                                 Files.createDirectories(subDir);
-                                createdDirs.add(subDir);
                             }
                             Path source = files[index].toPath();
-                            Path target = subDir.resolve(source.getFileName());
-                            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
-                            movedFiles.add(target);
-                            updateProgress(index + 1, totalFiles);
+                            sources.add(source);
+                            targets.add(subDir.resolve(source.getFileName()));
+                        }
+                        long first = journal.plan(sources, targets);
+                        for (int i = 0; i < sources.size(); i++) {
+                            Files.move(sources.get(i), targets.get(i), StandardCopyOption.REPLACE_EXISTING);
+                            journal.committed(first + i);
+                            updateProgress(from + i + 1, totalFiles);
                         }
                     }
                 } catch (Exception ex) {
-                    // rollback en cas d'erreur
-                    for (Path p : movedFiles)
-                        Files.move(p, distributionRootFolder.toPath().resolve(p.getFileName()), StandardCopyOption.REPLACE_EXISTING);
-                    for (Path dir : createdDirs) {
-                        if (Files.isDirectory(dir) && Objects.requireNonNull(dir.toFile().list()).length == 0)
-                            Files.deleteIfExists(dir);
-                    }
+                    // rollback en cas d'erreur, d'après le journal
+                    journal.rollback();
                     throw ex;
                 }
+                journal.complete();
                 return null;
             }
         };
@@ -1099,60 +1206,57 @@ public class FileManagerController {
 
                 int totalFiles = filesToMove.size();
                 AtomicInteger processed = new AtomicInteger();
+                NameReservationService names = new NameReservationService();
+                MoveJournal journal = MoveJournal.begin("merge", distributionRootFolder.toPath());
 
-                int threads = Runtime.getRuntime().availableProcessors();
-                ExecutorService executor = Executors.newFixedThreadPool(threads);
-
-                for (Path source : filesToMove) {
-
-                    executor.submit(() -> {
+                try {
+                    int threads = Runtime.getRuntime().availableProcessors();
+                    ExecutorService executor = Executors.newFixedThreadPool(threads);
 
-                        try {
+                    for (int from = 0; from < totalFiles; from += NameReservationService.JOURNAL_BATCH) {
 
-                            Path target = distributionRootFolder.toPath().resolve(source.getFileName());
+                        List<Path> batch = filesToMove.subList(from,
+                                Math.min(totalFiles, from + NameReservationService.JOURNAL_BATCH));
 
-                            synchronized (distributionRootFolder) {
-                                if (Files.exists(target)) {
+                        executor.submit(() -> {
 
-                                    String base = source.getFileName().toString();
-                                    int counter = 1;
-                                    Path newTarget;
+                            try {
 
-                                    do {
-                                        newTarget = distributionRootFolder.toPath()
-                                                .resolve(counter + "_" + base);
-                                        counter++;
-                                    } while (Files.exists(newTarget));
+                                // réservation sans verrou global ni sondage disque, un lot par synchronisation
+                                names.moveAll(batch, distributionRootFolder.toPath(), NameReservationService.Style.PREFIX, journal);
 
-                                    target = newTarget;
-                                }
+                            } catch (Exception e) {
+                                e.printStackTrace();
                             }
 
-                            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+                            int done = processed.addAndGet(batch.size());
+                            updateProgress(done, totalFiles);
 
-                        } catch (Exception ignored) {
-                        }
+                        });
+                    }
 
-                        int done = processed.incrementAndGet();
-                        updateProgress(done, totalFiles);
+                    executor.shutdown();
+                    executor.awaitTermination(1, TimeUnit.HOURS);
 
-                    });
-                }
-
-                executor.shutdown();
-                executor.awaitTermination(1, TimeUnit.HOURS);
+                    for (File dir : subDirs) {
+                        File[] remaining = dir.listFiles();
+                        if (remaining == null || remaining.length == 0) {
+                            Files.deleteIfExists(dir.toPath());
+                        }
+                    }
 
-                for (File dir : subDirs) {
-                    File[] remaining = dir.listFiles();
-                    if (remaining == null || remaining.length == 0) {
-                        Files.deleteIfExists(dir.toPath());
+                    if (withReduction) {
+                        reduceFolders(journal);
                     }
-                }
 
-                if (withReduction) {
-                    reduceFolders();
+                } catch (Exception e) {
+                    // journal conservé : annulation ou reprise proposée au prochain lancement
+                    journal.close();
+                    throw e;
                 }
 
+                journal.complete();
+
                 return null;
             }
         };
@@ -1175,13 +1279,14 @@ public class FileManagerController {
     }
 
 
-    private void reduceFolders() throws Exception {
+    private void reduceFolders(MoveJournal journal) throws Exception {
 
         File[] parentDirs = distributionRootFolder.listFiles(File::isDirectory);
         if (parentDirs == null) return;
 
         int threads = Runtime.getRuntime().availableProcessors();
         ExecutorService executor = Executors.newFixedThreadPool(threads);
+        NameReservationService names = new NameReservationService();
 
         List<Path> foldersToProcess = new ArrayList<>();
 
@@ -1206,33 +1311,18 @@ public class FileManagerController {
                             distributionRootFolder.toPath()
                                     .resolve(sourceFolder.getFileName());
 
-                    Files.createDirectories(targetFolder);
+                    List<Path> files = new ArrayList<>();
 
                     try (DirectoryStream<Path> stream =
                                  Files.newDirectoryStream(sourceFolder)) {
 
                         for (Path file : stream) {
-
-                            Path target = targetFolder.resolve(file.getFileName());
-
-                            if (Files.exists(target)) {
-
-                                String base = file.getFileName().toString();
-                                int counter = 1;
-                                Path newTarget;
-
-                                do {
-                                    newTarget = targetFolder.resolve(counter + "_" + base);
-                                    counter++;
-                                } while (Files.exists(newTarget));
-
-                                target = newTarget;
-                            }
-
-                            Files.move(file, target, StandardCopyOption.REPLACE_EXISTING);
+                            files.add(file);
                         }
                     }
 
+                    names.moveAll(files, targetFolder, NameReservationService.Style.PREFIX, journal);
+
                     Files.deleteIfExists(sourceFolder);
 
                 } catch (Exception ignored) {
@@ -0,0 +1,57 @@
+package com.rafaros.filemanagerutils.service;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+
+/**
+ * État d'un fichier qui traverse les étapes de conversion
+ * (lecture → décodage → encodage → commit).
+ */
+class ConversionJob {
+
+    enum Route {
+        /** PNG / GIF / BMP → JPG décodé et réencodé dans la JVM */
+        DECODE_TO_JPG,
+        /** JPEG → JPG réencodé dans la JVM ; route externe si l'en-tête l'exige */
+        REENCODE_JPEG,
+        /** HEIC / JPEG via ImageMagick puis heif-dec */
+        EXTERNAL,
+        /** simple renommage */
+        RENAME
+    }
+
+    final File source;
+    final File corruptedDir;
+    final String baseName;
+    final boolean sameExtension;
+    final File outputFile;
+    final Route route;
+
+    /** octets lus par l'étape de lecture, libérés après décodage */
+    byte[] sourceBytes;
+
+    /** image décodée, libérée après encodage */
+    BufferedImage image;
+
+    /** image trop grande pour être décodée d'un bloc : encodage par bandes */
+    boolean tiled;
+
+    ConversionJob(File source,
+                  File corruptedDir,
+                  String baseName,
+                  boolean sameExtension,
+                  File outputFile,
+                  Route route) {
+        this.source = source;
+        this.corruptedDir = corruptedDir;
+        this.baseName = baseName;
+        this.sameExtension = sameExtension;
+        this.outputFile = outputFile;
+        this.route = route;
+    }
+
+    /** fichier présent après le commit */
+    File finalFile() {
+        return sameExtension ? source : outputFile;
+    }
+}
@@ -0,0 +1,408 @@
+package com.rafaros.filemanagerutils.service;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * Manifeste persistant des conversions d'un dossier racine.
+ * <p>
+ * Pour chaque fichier produit : empreinte du chemin, taille, mtime,
+ * empreinte rapide du contenu (début / milieu / fin) et dernier résultat
+ * pour une extension cible. Un fichier inchangé déjà converti vers la même
+ * extension est ignoré au lancement suivant.
+ * <p>
+ * Stockage : {@code ~/.filemanagerutils/manifests/<empreinte racine>.bin},
+ * enregistrements binaires de taille fixe lus d'un bloc ; en mémoire, une
+ * table à adressage ouvert sur des tableaux de {@code long} (aucun objet par
+ * entrée) pour tenir des millions de fichiers.
+ */
+public class ConversionManifest {
+
+    public enum Outcome {
+        CONVERTED,
+        FAILED
+    }
+
+    private static final int MAGIC = 0x464D434D; // "FMCM"
+    private static final int VERSION = 1;
+
+    /** pathHash, size, mtime, contentHash, target, outcome */
+    private static final int RECORD_BYTES = 8 + 8 + 8 + 8 + 4 + 1;
+    private static final int HEADER_BYTES = 4 + 4 + 4;
+
+    /** octets lus à chaque point d'échantillonnage du contenu */
+    private static final int SAMPLE_BYTES = 16 * 1024;
+
+    private static final ThreadLocal<ByteBuffer> SAMPLE_BUFFER =
+            ThreadLocal.withInitial(() -> ByteBuffer.allocate(SAMPLE_BYTES));
+
+    private final Path storage;
+
+    // table à adressage ouvert (clé 0 = case vide)
+    private long[] keys;
+    private long[] sizes;
+    private long[] mtimes;
+    private long[] contentHashes;
+    private int[] targets;
+    private byte[] outcomes;
+    private int count;
+
+    private boolean dirty;
+
+    private ConversionManifest(Path storage, int expected) {
+        this.storage = storage;
+        allocate(tableSizeFor(expected));
+    }
+
+    /* =========================================================
+       CHARGEMENT / SAUVEGARDE
+       ========================================================= */
+
+    /**
+     * Charge le manifeste du dossier {@code root} (vide s'il n'existe pas
+     * ou s'il est illisible).
+     */
+    public static ConversionManifest load(File root) {
+
+        Path dir = Path.of(System.getProperty("user.home"), ".filemanagerutils", "manifests");
+        String name = Long.toHexString(hashString(root.getAbsolutePath())) + ".bin";
+
+        return load(dir.resolve(name));
+    }
+
+    static ConversionManifest load(Path storage) {
+
+        if (!Files.isRegularFile(storage)) {
+            return new ConversionManifest(storage, 0);
+        }
+
+        try (FileChannel channel = FileChannel.open(storage, StandardOpenOption.READ)) {
+
+            long length = channel.size();
+            if (length < HEADER_BYTES || length > Integer.MAX_VALUE) {
+                throw new IOException("Invalid manifest size: " + length);
+            }
+
+            ByteBuffer buffer = ByteBuffer.allocate((int) length);
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // lecture complète
+            }
+            buffer.flip();
+
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                throw new IOException("Unknown manifest format");
+            }
+
+            int records = buffer.getInt();
+            if (records < 0 || (long) records * RECORD_BYTES > buffer.remaining()) {
+                throw new IOException("Truncated manifest");
+            }
+
+            ConversionManifest manifest = new ConversionManifest(storage, records);
+
+            for (int i = 0; i < records; i++) {
+                manifest.put(
+                        buffer.getLong(),
+                        buffer.getLong(),
+                        buffer.getLong(),
+                        buffer.getLong(),
+                        buffer.getInt(),
+                        buffer.get());
+            }
+
+            manifest.dirty = false;
+            return manifest;
+
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Manifest ignored (" + storage.getFileName() + "): " + e.getMessage());
+            return new ConversionManifest(storage, 0);
+        }
+    }
+
+    /**
+     * Écrit le manifeste dans un fichier temporaire puis le renomme :
+     * un arrêt brutal laisse l'ancienne version intacte.
+     */
+    public synchronized void save() throws IOException {
+
+        if (!dirty) {
+            return;
+        }
+
+        Files.createDirectories(storage.getParent());
+        Path tmp = storage.resolveSibling(storage.getFileName() + ".tmp");
+
+        try (FileChannel channel = FileChannel.open(tmp,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE)) {
+
+            ByteBuffer buffer = ByteBuffer.allocate(Math.max(HEADER_BYTES, 4096 * RECORD_BYTES));
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(count);
+
+            for (int slot = 0; slot < keys.length; slot++) {
+                if (keys[slot] == 0) continue;
+
+                if (buffer.remaining() < RECORD_BYTES) {
+                    writeFully(channel, buffer);
+                }
+                buffer.putLong(keys[slot])
+                        .putLong(sizes[slot])
+                        .putLong(mtimes[slot])
+                        .putLong(contentHashes[slot])
+                        .putInt(targets[slot])
+                        .put(outcomes[slot]);
+            }
+            writeFully(channel, buffer);
+            channel.force(false);
+        }
+
+        try {
+            Files.move(tmp, storage, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp, storage, StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        dirty = false;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /* =========================================================
+       REQUÊTES
+       ========================================================= */
+
+    /**
+     * Vrai si {@code file} a déjà été produit par une conversion vers
+     * {@code extension} et n'a pas changé depuis (taille, mtime, contenu).
+     */
+    public boolean isConverted(File file, String extension) {
+
+        long key = keyOf(file);
+        long size;
+        long mtime;
+
+        synchronized (this) {
+            int slot = find(key);
+            if (slot < 0
+                    || outcomes[slot] != Outcome.CONVERTED.ordinal()
+                    || targets[slot] != extension.hashCode()) {
+                return false;
+            }
+            size = sizes[slot];
+            mtime = mtimes[slot];
+        }
+
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+
+            if (attrs.size() != size || attrs.lastModifiedTime().toMillis() != mtime) {
+                return false;
+            }
+
+            long contentHash = contentHash(file.toPath(), size);
+
+            // la table a pu être agrandie entre-temps : nouvelle recherche
+            synchronized (this) {
+                int slot = find(key);
+                return slot >= 0 && contentHashes[slot] == contentHash;
+            }
+
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Enregistre le résultat pour le fichier final {@code file}
+     * (lit sa taille, sa mtime et son empreinte de contenu).
+     */
+    public void record(File file, String extension, Outcome outcome) {
+
+        long key = keyOf(file);
+
+        long size = -1;
+        long mtime = -1;
+        long contentHash = 0;
+
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+            size = attrs.size();
+            mtime = attrs.lastModifiedTime().toMillis();
+            contentHash = contentHash(file.toPath(), size);
+        } catch (IOException ignored) {
+            // fichier déplacé (corrupted/) : seul le résultat est conservé
+        }
+
+        synchronized (this) {
+            put(key, size, mtime, contentHash, extension.hashCode(), (byte) outcome.ordinal());
+        }
+    }
+
+    public synchronized int size() {
+        return count;
+    }
+
+    /* =========================================================
+       EMPREINTES
+       ========================================================= */
+
+    private static long keyOf(File file) {
+        long key = hashString(file.getAbsolutePath());
+        return key == 0 ? 1 : key;
+    }
+
+    /** FNV-1a 64 bits + mélange final */
+    static long hashString(String s) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < s.length(); i++) {
+            h ^= s.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return mix(h);
+    }
+
+    /**
+     * Empreinte rapide : taille + trois échantillons (début, milieu, fin).
+     * Lit au plus 48 Ko quelle que soit la taille du fichier.
+     */
+    static long contentHash(Path path, long size) throws IOException {
+
+        long h = mix(size);
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+
+            // petit fichier : lu en entier par tranches consécutives
+            long[] offsets = size <= 3L * SAMPLE_BYTES
+                    ? new long[]{0, SAMPLE_BYTES, 2L * SAMPLE_BYTES}
+                    : new long[]{0, size / 2 - SAMPLE_BYTES / 2, size - SAMPLE_BYTES};
+
+            ByteBuffer buffer = SAMPLE_BUFFER.get();
+
+            for (long offset : offsets) {
+                if (offset >= size) break;
+
+                buffer.clear();
+                buffer.limit((int) Math.min(SAMPLE_BYTES, size - offset));
+
+                long position = offset;
+                while (buffer.hasRemaining()) {
+                    int read = channel.read(buffer, position);
+                    if (read < 0) break;
+                    position += read;
+                }
+                buffer.flip();
+
+                // 8 octets à la fois, reste octet par octet
+                while (buffer.remaining() >= 8) {
+                    h = (h ^ buffer.getLong()) * 0x9E3779B97F4A7C15L;
+                }
+                while (buffer.hasRemaining()) {
+                    h = (h ^ buffer.get()) * 0x9E3779B97F4A7C15L;
+                }
+                h = mix(h);
+            }
+        }
+
+        return h;
+    }
+
+    /** finaliseur de MurmurHash3 */
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /* =========================================================
+       TABLE À ADRESSAGE OUVERT
+       ========================================================= */
+
+    private int find(long key) {
+        int mask = keys.length - 1;
+        int slot = (int) key & mask;
+        while (keys[slot] != 0) {
+            if (keys[slot] == key) return slot;
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void put(long key, long size, long mtime, long contentHash, int target, byte outcome) {
+
+        if ((count + 1) * 4L > keys.length * 3L) {
+            grow();
+        }
+
+        int mask = keys.length - 1;
+        int slot = (int) key & mask;
+        while (keys[slot] != 0 && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+
+        if (keys[slot] == 0) {
+            keys[slot] = key;
+            count++;
+        }
+        sizes[slot] = size;
+        mtimes[slot] = mtime;
+        contentHashes[slot] = contentHash;
+        targets[slot] = target;
+        outcomes[slot] = outcome;
+
+        dirty = true;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        long[] oldSizes = sizes;
+        long[] oldMtimes = mtimes;
+        long[] oldHashes = contentHashes;
+        int[] oldTargets = targets;
+        byte[] oldOutcomes = outcomes;
+
+        allocate(oldKeys.length * 2);
+        count = 0;
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                put(oldKeys[i], oldSizes[i], oldMtimes[i], oldHashes[i], oldTargets[i], oldOutcomes[i]);
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        sizes = new long[capacity];
+        mtimes = new long[capacity];
+        contentHashes = new long[capacity];
+        targets = new int[capacity];
+        outcomes = new byte[capacity];
+    }
+
+    /** puissance de 2, remplissage ≤ 75 % */
+    private static int tableSizeFor(int expected) {
+        int capacity = 1024;
+        while (capacity * 3L < expected * 4L) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+}
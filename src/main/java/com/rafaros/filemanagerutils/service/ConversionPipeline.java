@@ -0,0 +1,240 @@
+package com.rafaros.filemanagerutils.service;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Pipeline de conversion en 4 étapes (lecture → décodage → encodage → commit).
+ * <p>
+ * Chaque étape a ses propres workers ; les files bornées entre étapes
+ * limitent le nombre d'images décodées en mémoire (backpressure).
+ * Un échec n'affecte que son fichier, qui part dans corrupted/.
+ */
+public class ConversionPipeline {
+
+    /** Notifications émises depuis les threads du pipeline */
+    public interface Listener {
+
+        void fileProcessed(File file, boolean success);
+
+        /** Fichier inchangé déjà converti d'après le manifeste */
+        default void fileSkipped(File file) {
+            fileProcessed(file, true);
+        }
+
+        /** Fichier déplacé dans corrupted/ : peut être réparé immédiatement */
+        void fileCorrupted(File corruptedFile);
+    }
+
+    private interface StageAction {
+        void apply(ConversionJob job) throws Exception;
+    }
+
+    /** Marqueur de fin de flux */
+    private static final ConversionJob END =
+            new ConversionJob(null, null, null, false, null, ConversionJob.Route.RENAME);
+    private static final File END_FILE = new File("");
+
+    private final FileExtensionService service;
+    private final int workers;
+    private final int queueCapacity;
+    private final ConversionManifest manifest;
+
+    public ConversionPipeline(FileExtensionService service, int workers) {
+        this(service, workers, null);
+    }
+
+    /**
+     * @param manifest si non null, les fichiers déjà convertis et inchangés
+     *                 sont ignorés et chaque résultat y est enregistré
+     */
+    public ConversionPipeline(FileExtensionService service, int workers, ConversionManifest manifest) {
+        this(service, workers, Math.max(2, workers * 2), manifest);
+    }
+
+    public ConversionPipeline(FileExtensionService service, int workers, int queueCapacity,
+                              ConversionManifest manifest) {
+        this.service = service;
+        this.workers = Math.max(1, workers);
+        this.queueCapacity = Math.max(1, queueCapacity);
+        this.manifest = manifest;
+    }
+
+    /**
+     * Convertit tous les fichiers et bloque jusqu'à la fin du dernier commit.
+     * Si {@code cancelled} devient vrai, plus aucun fichier n'entre dans le pipeline ;
+     * ceux déjà en cours vont jusqu'au commit.
+     */
+    public void run(List<File> files,
+                    String newExtension,
+                    File corruptedDir,
+                    Listener listener,
+                    BooleanSupplier cancelled) throws InterruptedException {
+
+        BlockingQueue<ConversionJob> toDecode = new ArrayBlockingQueue<>(queueCapacity);
+        BlockingQueue<ConversionJob> toEncode = new ArrayBlockingQueue<>(queueCapacity);
+        BlockingQueue<ConversionJob> toCommit = new ArrayBlockingQueue<>(queueCapacity);
+        BlockingQueue<File> toRead = new ArrayBlockingQueue<>(queueCapacity);
+
+        CountDownLatch done = new CountDownLatch(1);
+
+        // lecture : I/O, quelques threads suffisent
+        int readers = Math.max(1, Math.min(4, workers / 2));
+        AtomicInteger readersLeft = new AtomicInteger(readers);
+
+        for (int i = 1; i <= readers; i++) {
+            startThread("conversion-read-" + i, () -> {
+                try {
+                    while (true) {
+                        File file = toRead.take();
+                        if (file == END_FILE) {
+                            toRead.put(END_FILE);
+                            break;
+                        }
+
+                        if (manifest != null && manifest.isConverted(file, newExtension)) {
+                            listener.fileSkipped(file);
+                            continue;
+                        }
+
+                        ConversionJob job;
+                        try {
+                            job = service.prepareConversion(file, newExtension, corruptedDir);
+                        } catch (Throwable e) {
+                            System.err.println("Conversion failed: " + file.getName() + " (" + e + ")");
+                            job = null;
+                        }
+                        if (job == null) {
+                            listener.fileProcessed(file, false);
+                            continue;
+                        }
+
+                        try {
+                            service.readSource(job);
+                        } catch (Throwable e) {
+                            isolate(job, e, listener);
+                            continue;
+                        }
+                        toDecode.put(job);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    if (readersLeft.decrementAndGet() == 0) {
+                        putQuietly(toDecode, END);
+                    }
+                }
+            });
+        }
+
+        startStage("conversion-decode", workers, toDecode, toEncode, service::decode, listener, null);
+        startStage("conversion-encode", workers, toEncode, toCommit, service::encode, listener, null);
+        startStage("conversion-commit", 2, toCommit, null, job -> {
+            service.commit(job);
+            if (manifest != null) {
+                manifest.record(job.finalFile(), newExtension, ConversionManifest.Outcome.CONVERTED);
+            }
+            listener.fileProcessed(job.source, true);
+        }, listener, done);
+
+        try {
+            for (File file : files) {
+                if (cancelled.getAsBoolean()) break;
+                toRead.put(file);
+            }
+            toRead.put(END_FILE);
+        } catch (InterruptedException e) {
+            // interruption : les fichiers pas encore lus sont abandonnés
+            toRead.clear();
+            toRead.offer(END_FILE);
+            throw e;
+        }
+
+        done.await();
+    }
+
+    private void startStage(String name,
+                            int threads,
+                            BlockingQueue<ConversionJob> in,
+                            BlockingQueue<ConversionJob> out,
+                            StageAction action,
+                            Listener listener,
+                            CountDownLatch done) {
+
+        AtomicInteger left = new AtomicInteger(threads);
+
+        for (int i = 1; i <= threads; i++) {
+            startThread(name + "-" + i, () -> {
+                try {
+                    while (true) {
+                        ConversionJob job = in.take();
+                        if (job == END) {
+                            in.put(END);
+                            break;
+                        }
+
+                        try {
+                            action.apply(job);
+                        } catch (Throwable e) {
+                            // Error compris (OutOfMemoryError sur une image géante) :
+                            // le fichier est compté en échec, le thread continue
+                            isolate(job, e, listener);
+                            continue;
+                        }
+
+                        if (out != null) {
+                            out.put(job);
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    if (left.decrementAndGet() == 0) {
+                        if (out != null) putQuietly(out, END);
+                        if (done != null) done.countDown();
+                    }
+                }
+            });
+        }
+    }
+
+    private void isolate(ConversionJob job, Throwable e, Listener listener) {
+
+        File moved = service.fail(job, e);
+
+        if (manifest != null) {
+            manifest.record(job.source, newExtensionOf(job), ConversionManifest.Outcome.FAILED);
+        }
+
+        listener.fileProcessed(job.source, false);
+
+        if (moved != null) {
+            listener.fileCorrupted(moved);
+        }
+    }
+
+    /** extension cible, déjà normalisée dans le nom de sortie */
+    private static String newExtensionOf(ConversionJob job) {
+        String name = job.outputFile.getName();
+        return name.substring(name.lastIndexOf('.') + 1);
+    }
+
+    private static void putQuietly(BlockingQueue<ConversionJob> queue, ConversionJob job) {
+        try {
+            queue.put(job);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void startThread(String name, Runnable body) {
+        Thread t = new Thread(body, name);
+        t.setDaemon(true);
+        t.start();
+    }
+}
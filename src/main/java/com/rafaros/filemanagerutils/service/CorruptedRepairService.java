@@ -1,18 +1,15 @@
 package com.rafaros.filemanagerutils.service;
 
 import javax.imageio.ImageIO;
-import java.awt.*;
 import java.awt.image.BufferedImage;
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.nio.file.Paths;
-import java.util.List;
 
 public class CorruptedRepairService {
 
     private final File pythonRepairScript;
+    private final MagickWorkerPool magickPool = MagickWorkerPool.shared();
 
     public CorruptedRepairService() {
         this.pythonRepairScript = new File(
@@ -24,106 +21,132 @@ public class CorruptedRepairService {
         }
     }
     /**
-     * Réécriture de tous les fichiers corrompus avec ImageMagick
+     * Réécriture de tous les fichiers corrompus avec ImageMagick / ImageIO / Python fallback,
+     * en parallèle (plafonds par outil, cf. {@link RepairBackend}).
      */
-    /**
-     * Réécriture de tous les fichiers corrompus avec ImageMagick / ImageIO / Python fallback
-     */
-    public void repairCorruptedFolder(File corruptedDir) {
+    public RepairReport repairCorruptedFolder(File corruptedDir) throws InterruptedException {
         PythonEnvironmentChecker.verifyPythonAndPillowOrThrow();
 
-        if (corruptedDir == null || !corruptedDir.exists() || !corruptedDir.isDirectory()) return;
-
-        File[] files = corruptedDir.listFiles();
-        if (files == null) return;
-
-        for (File file : files) {
-            System.out.println("\n🔧 Processing file: " + file.getName());
-            try {
-                boolean repaired = repairFileWithFallbacks(file, pythonRepairScript);
-                if (!repaired) {
-                    System.err.println("❌ Final failure: " + file.getName());
-                }
-            } catch (Exception e) {
-                System.err.println("Failed to process " + file.getName() + ": " + e.getMessage());
-                e.printStackTrace();
+        RepairScheduler scheduler = new RepairScheduler(this, null);
+
+        if (corruptedDir == null || !corruptedDir.exists() || !corruptedDir.isDirectory()) {
+            return scheduler.finish(() -> false);
+        }
+
+        File[] files = corruptedDir.listFiles(File::isFile);
+        if (files != null) {
+            for (File file : files) {
+                scheduler.submit(file);
             }
         }
+
+        return scheduler.finish(() -> Thread.currentThread().isInterrupted());
     }
 
     /**
-     * Essaye de réparer un fichier avec ImageMagick, puis ImageIO, puis Python
+     * Essaye de réparer un fichier avec ImageMagick, ImageIO ou Python, selon le diagnostic
      */
     public boolean repairFileWithFallbacks(File inputFile, File pythonScript) {
+        return repair(inputFile, pythonScript).isRepaired();
+    }
+
+    /**
+     * Diagnostic structurel puis outils dans l'ordre le moins cher pour ce
+     * diagnostic (cf. {@link CorruptionTriage}) ; chaque outil respecte son
+     * plafond de concurrence. Un fichier irrécupérable échoue sans lancer d'outil.
+     */
+    public RepairResult repair(File inputFile, File pythonScript) {
+        RepairResult result = new RepairResult(inputFile);
+
+        CorruptionTriage.Result triage = CorruptionTriage.classify(inputFile);
+        result.setTriage(triage);
+
+        // contenu valide mal nommé : un renommage suffit
+        if (triage.getDamage() == CorruptionTriage.Damage.WRONG_EXTENSION) {
+            File renamed = withContentExtension(inputFile, triage.getFormat());
+            if (tryStep(result, RepairBackend.JVM, () -> !renamed.exists() && inputFile.renameTo(renamed))) {
+                result.setOutput(renamed);
+                return result;
+            }
+        }
+
         String baseName = inputFile.getName().replaceFirst("\\.[^.]+$", "");
         File outputFile = new File(inputFile.getParentFile(), baseName + "_fixed.jpg");
 
-        // 1️⃣ Tentative ImageMagick
-        try {
-            boolean magickOk = rewriteWithMagick(inputFile);
-            if (magickOk) {
-                System.out.println("✅ Rewritten with ImageMagick: " + inputFile.getName());
-                return true;
-            } else {
-                System.err.println("ImageMagick could not repair: " + inputFile.getName());
+        for (RepairBackend backend : triage.plan()) {
+            switch (backend) {
+
+                case MAGICK:
+                    if (tryStep(result, backend, () -> rewriteWithMagick(inputFile))) {
+                        result.setOutput(inputFile);
+                        return result;
+                    }
+                    break;
+
+                case JVM:
+                    if (tryStep(result, backend, () -> {
+                        rewriteFile(inputFile); // lance IOException si échec
+                        return true;
+                    })) {
+                        result.setOutput(inputFile);
+                        return result;
+                    }
+                    break;
+
+                case PYTHON:
+                    if (tryStep(result, backend, () -> {
+                        if (!PythonEnvironmentChecker.isAvailable()) {
+                            throw new IllegalStateException("Python / Pillow unavailable");
+                        }
+                        return repairWithPython(inputFile, outputFile, pythonScript);
+                    })) {
+                        // ne pas renommer en PNG, garder le .jpg
+                        inputFile.delete();
+                        result.setOutput(outputFile);
+                        return result;
+                    }
+                    break;
             }
-        } catch (Exception magickError) {
-            System.err.println("ImageMagick failed for " + inputFile.getName() + ": " + magickError.getMessage());
         }
 
-        // 2️⃣ Tentative ImageIO (manuel Java)
-        try {
-            rewriteFile(inputFile); // lance IOException si échec
-            System.out.println("✅ Rewritten with ImageIO: " + inputFile.getName());
-            return true;
-        } catch (Exception imageIoError) {
-            System.err.println("ImageIO failed for " + inputFile.getName() + ": " + imageIoError.getMessage());
-        }
+        return result;
+    }
 
-        // 3️⃣ Fallback Python
-        System.out.println("➡ Trying Python fallback for " + inputFile.getName());
-        boolean pythonOk = repairWithPython(inputFile, outputFile, pythonScript);
-        System.out.println("Python exit: " + pythonOk);
-        outputFile = new File(inputFile.getParentFile(), baseName + ".jpg");
-        if (pythonOk) {
-            inputFile.delete();
-            // ne pas renommer en PNG, garder le .jpg
-            System.out.println("✅ Rewritten with Python: " + outputFile.getName());
-            return true;
-        }
+    private static File withContentExtension(File file, ImageFormat format) {
+        String baseName = file.getName().replaceFirst("\\.[^.]+$", "");
+        return new File(file.getParentFile(), baseName + format.extension());
+    }
 
-        // 4️⃣ Échec total
-        System.err.println("❌ All repair methods failed for " + inputFile.getName());
-        return false;
+    private static boolean tryStep(RepairResult result, RepairBackend backend, RepairBackend.Step step) {
+        try {
+            boolean ok = backend.run(step);
+            result.attempt(backend, ok, null);
+            return ok;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            result.attempt(backend, false, "interrupted");
+            return false;
+        } catch (Exception e) {
+            result.attempt(backend, false, e.getMessage());
+            return false;
+        }
     }
 
     /**
      * Réécrit un fichier avec ImageMagick
      */
     private boolean rewriteWithMagick(File inputFile) {
-        try {
-            String baseName = inputFile.getName().replaceFirst("\\.[^.]+$", "");
-            File outputFile = new File(inputFile.getParentFile(), baseName + "_fixed.jpg");
-
-            ProcessBuilder pb = new ProcessBuilder(
-                    "magick",
-                    inputFile.getAbsolutePath(),
-                    "-define", "png:ignore-crc=TRUE",
-                    "-background", "white",
-                    "-alpha", "remove",
-                    outputFile.getAbsolutePath()
-            );
-            pb.redirectErrorStream(true);
-            Process p = pb.start();
-            p.waitFor();
+        String baseName = inputFile.getName().replaceFirst("\\.[^.]+$", "");
+        File outputFile = new File(inputFile.getParentFile(), baseName + "_fixed.jpg");
 
-            if (p.exitValue() == 0 && outputFile.exists()) {
-                inputFile.delete();
-                outputFile.renameTo(inputFile);
-                return true;
-            }
-        } catch (Exception e) {
-            System.err.println("rewriteWithMagick exception: " + e.getMessage());
+        if (!magickPool.convert(MagickWorkerPool.Profile.REPAIR_FLATTEN, inputFile, outputFile)) {
+            return false;
+        }
+
+        if (outputFile.exists()) {
+            inputFile.delete();
+            outputFile.renameTo(inputFile);
+            return true;
         }
         return false;
     }
@@ -136,26 +159,18 @@ public class CorruptedRepairService {
         BufferedImage inputImage = ImageIO.read(inputFile);
         if (inputImage == null) throw new IOException("ImageIO returned null");
 
-        BufferedImage convertedImage = new BufferedImage(
-                inputImage.getWidth(),
-                inputImage.getHeight(),
-                BufferedImage.TYPE_INT_RGB
-        );
-
-        Graphics2D g2d = convertedImage.createGraphics();
-        g2d.setColor(Color.WHITE); // fond blanc pour gérer la transparence
-        g2d.fillRect(0, 0, convertedImage.getWidth(), convertedImage.getHeight());
-        g2d.drawImage(inputImage, 0, 0, null);
-        g2d.dispose();
+        // fond blanc pour gérer la transparence
+        BufferedImage convertedImage = RgbFlattener.flattenOnWhite(inputImage);
 
-        if (!ImageIO.write(convertedImage, "jpg", outputFile)) {
-            throw new IOException("ImageIO write failed");
+        try {
+            JpegEncoder.write(convertedImage, outputFile, true);
+        } finally {
+            RgbFlattener.release(convertedImage);
         }
 
         // Remplace l’ancien fichier par le nouveau
         inputFile.delete();
         outputFile.renameTo(inputFile);
-        System.out.println("Rewritten: " + inputFile.getName());
     }
 
     public void rewriteCorruptedWithMagick(File inputFile, String baseName) {
@@ -165,19 +180,9 @@ public class CorruptedRepairService {
                     baseName + ".jpg"
             );
 
-            ProcessBuilder pb = new ProcessBuilder(
-                    "magick",
-                    inputFile.getAbsolutePath(),
-                    "-define", "png:ignore-crc=TRUE",
-                    "-background", "white",
-                    "-alpha", "remove",
-                    outputFile.getAbsolutePath()
-            );
-            pb.redirectErrorStream(true);
-            Process process = pb.start();
-            process.waitFor();
+            boolean ok = magickPool.convert(MagickWorkerPool.Profile.REPAIR_FLATTEN, inputFile, outputFile);
 
-            if (process.exitValue() == 0 && outputFile.exists()) {
+            if (ok && outputFile.exists()) {
                 inputFile.delete();
                 outputFile.renameTo(inputFile);
                 System.out.println("Rewritten: " + inputFile.getName());
@@ -193,40 +198,22 @@ public class CorruptedRepairService {
      * Réécrit un fichier avec le script Python
      */
     public boolean repairWithPython(File inputFile, File outputFile, File scriptFile) {
+        if (scriptFile == null) {
+            scriptFile = this.pythonRepairScript;
+        }
+
         if (!scriptFile.exists()) {
             System.err.println("❌ Python script does not exist: " + scriptFile.getAbsolutePath());
             return false;
         }
 
-       if (scriptFile==null){
-          scriptFile=this.pythonRepairScript;
-       }
-
-        try {
-            ProcessBuilder pb = new ProcessBuilder(
-                    "python",
-                    scriptFile.getAbsolutePath(),
-                    inputFile.getAbsolutePath(),
-                    outputFile.getAbsolutePath()
-            );
-            pb.redirectErrorStream(true);
-            Process p = pb.start();
-
-            try (BufferedReader reader = new BufferedReader(new InputStreamReader(p.getInputStream()))) {
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    System.out.println("[Python] " + line);
-                }
-            }
-
-            int exit = p.waitFor();
-            System.out.println("[Python] Exit code: " + exit);
-            return exit == 0 && outputFile.exists();
-
-        } catch (Exception e) {
-            System.err.println("Python repair exception: " + e.getMessage());
-            e.printStackTrace();
+        if (!PythonEnvironmentChecker.isAvailable()) {
+            System.err.println("❌ Python / Pillow unavailable, skipping " + inputFile.getName());
             return false;
         }
+
+        // interpréteur déjà démarré (Pillow importé) réutilisé d'un fichier à l'autre
+        boolean ok = PythonRepairWorkerPool.shared(scriptFile).repair(inputFile, outputFile);
+        return ok && outputFile.exists();
     }
 }
\ No newline at end of file
@@ -0,0 +1,358 @@
+package com.rafaros.filemanagerutils.service;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Diagnostic structurel d'un fichier corrompu, en Java pur, avant tout
+ * lancement d'outil de réparation.
+ * <p>
+ * PNG : parcours des chunks (longueur, type, CRC, présence d'IHDR / IDAT / IEND).
+ * JPEG : SOI, segments jusqu'à SOS, puis EOI en fin de fichier.
+ * Chaque diagnostic donne l'ordre des outils à essayer, du moins cher au plus cher ;
+ * un format non reconnu va directement à magick puis Python ; un fichier
+ * irrécupérable (vide, en-tête impossible) n'en essaie aucun.
+ * <p>
+ * Lectures positionnelles dans un tampon direct par thread plutôt qu'un
+ * mapping mémoire : sous Windows, un fichier encore mappé ne peut être ni
+ * renommé ni supprimé, ce que fait la réparation juste après.
+ */
+public final class CorruptionTriage {
+
+    public enum Damage {
+        /** structure intacte : c'est le décodage qui a échoué */
+        NONE,
+        /** seuls des CRC de chunks PNG sont faux */
+        BAD_CRC,
+        /** données coupées (IEND / EOI manquant, chunk dépassant la fin) */
+        TRUNCATED,
+        /** structure intacte, mais l'extension ne correspond pas au contenu */
+        WRONG_EXTENSION,
+        /** pas d'en-tête exploitable : aucun outil ne peut le réparer */
+        UNRECOVERABLE
+    }
+
+    /** Diagnostic d'un fichier */
+    public static final class Result {
+
+        private final ImageFormat format;
+        private final Damage damage;
+        private final String detail;
+
+        Result(ImageFormat format, Damage damage, String detail) {
+            this.format = format;
+            this.damage = damage;
+            this.detail = detail;
+        }
+
+        public ImageFormat getFormat() {
+            return format;
+        }
+
+        public Damage getDamage() {
+            return damage;
+        }
+
+        public String getDetail() {
+            return detail;
+        }
+
+        /**
+         * Outils à essayer, dans l'ordre. ImageIO ne vérifie pas les CRC PNG
+         * et tolère un JPEG tronqué ; seul Pillow (LOAD_TRUNCATED_IMAGES)
+         * relit un PNG tronqué.
+         */
+        public List<RepairBackend> plan() {
+
+            // format non reconnu : seuls magick et Pillow en lisent d'autres
+            boolean jvm = format.isImageIoReadable();
+
+            switch (damage) {
+                case UNRECOVERABLE:
+                    return Collections.emptyList();
+                case BAD_CRC:
+                    return List.of(RepairBackend.JVM, RepairBackend.MAGICK, RepairBackend.PYTHON);
+                case TRUNCATED:
+                    return format == ImageFormat.JPEG
+                            ? List.of(RepairBackend.JVM, RepairBackend.MAGICK, RepairBackend.PYTHON)
+                            : List.of(RepairBackend.PYTHON, RepairBackend.MAGICK);
+                case WRONG_EXTENSION:
+                case NONE:
+                default:
+                    return jvm
+                            ? List.of(RepairBackend.JVM, RepairBackend.MAGICK, RepairBackend.PYTHON)
+                            : List.of(RepairBackend.MAGICK, RepairBackend.PYTHON);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return format + "/" + damage + (detail != null ? " (" + detail + ")" : "");
+        }
+    }
+
+    private static final byte[] PNG_SIGNATURE =
+            {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+
+    private static final int CHUNK_IHDR = 0x49484452;
+    private static final int CHUNK_IDAT = 0x49444154;
+    private static final int CHUNK_IEND = 0x49454E44;
+
+    /** zone de fin de fichier où chercher l'EOI (octets parasites après l'image) */
+    private static final int JPEG_TAIL_BYTES = 4096;
+
+    private static final ThreadLocal<ByteBuffer> BUFFER =
+            ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(256 * 1024));
+
+    private static final ThreadLocal<CRC32> CRC = ThreadLocal.withInitial(CRC32::new);
+
+    private CorruptionTriage() {
+    }
+
+    public static Result classify(File file) {
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+
+            long size = channel.size();
+            ByteBuffer buffer = BUFFER.get();
+
+            int headerLength = read(channel, buffer, 0, 32);
+            byte[] header = new byte[headerLength];
+            buffer.get(header);
+
+            ImageFormat format = ImageFormatSniffer.detect(header, headerLength);
+
+            Result structural;
+            switch (format) {
+                case PNG:
+                    structural = checkPng(channel, size);
+                    break;
+                case JPEG:
+                    structural = checkJpeg(channel, size);
+                    break;
+                case UNKNOWN:
+                    // TIFF, AVIF… : pas de contrôle structurel, les outils externes essaient
+                    return size == 0
+                            ? new Result(format, Damage.UNRECOVERABLE, "empty file")
+                            : new Result(format, Damage.NONE, "no known image signature");
+                default:
+                    // GIF / BMP / HEIC / WebP : signature seulement
+                    structural = new Result(format, Damage.NONE, null);
+                    break;
+            }
+
+            if (structural.damage == Damage.NONE && !hasExtensionOf(file, format)) {
+                return new Result(format, Damage.WRONG_EXTENSION, "content is " + format);
+            }
+            return structural;
+
+        } catch (IOException e) {
+            return new Result(ImageFormat.UNKNOWN, Damage.UNRECOVERABLE, e.getMessage());
+        }
+    }
+
+    /* =========================================================
+       PNG
+       ========================================================= */
+
+    private static Result checkPng(FileChannel channel, long size) throws IOException {
+
+        ByteBuffer buffer = BUFFER.get();
+        CRC32 crc = CRC.get();
+
+        long pos = PNG_SIGNATURE.length;
+        boolean first = true;
+        boolean sawIdat = false;
+        boolean badCrc = false;
+
+        while (true) {
+
+            if (pos + 8 > size) {
+                return sawIdat
+                        ? result(ImageFormat.PNG, Damage.TRUNCATED, "missing IEND")
+                        : result(ImageFormat.PNG, Damage.UNRECOVERABLE, "no image data");
+            }
+
+            read(channel, buffer, pos, 8);
+            long length = buffer.getInt() & 0xFFFFFFFFL;
+            int type = buffer.getInt();
+
+            if (length > Integer.MAX_VALUE || !isChunkType(type)) {
+                return sawIdat
+                        ? result(ImageFormat.PNG, Damage.TRUNCATED, "garbage after image data")
+                        : result(ImageFormat.PNG, Damage.UNRECOVERABLE, "invalid chunk header");
+            }
+
+            if (first && type != CHUNK_IHDR) {
+                return result(ImageFormat.PNG, Damage.UNRECOVERABLE, "IHDR missing");
+            }
+            first = false;
+
+            long end = pos + 8 + length + 4;
+
+            if (end > size) {
+                return sawIdat || type == CHUNK_IDAT
+                        ? result(ImageFormat.PNG, Damage.TRUNCATED, "chunk past end of file")
+                        : result(ImageFormat.PNG, Damage.UNRECOVERABLE, "header chunk past end of file");
+            }
+
+            // CRC sur type + données, par tranches
+            crc.reset();
+            crc.update(type >>> 24);
+            crc.update(type >>> 16);
+            crc.update(type >>> 8);
+            crc.update(type);
+
+            long dataPos = pos + 8;
+            long remaining = length;
+            while (remaining > 0) {
+                int n = read(channel, buffer, dataPos, (int) Math.min(remaining, buffer.capacity()));
+                if (n <= 0) {
+                    return result(ImageFormat.PNG, Damage.TRUNCATED, "short read");
+                }
+                crc.update(buffer);
+                dataPos += n;
+                remaining -= n;
+            }
+
+            read(channel, buffer, pos + 8 + length, 4);
+            if ((buffer.getInt() & 0xFFFFFFFFL) != crc.getValue()) {
+                badCrc = true;
+            }
+
+            if (type == CHUNK_IDAT) sawIdat = true;
+            if (type == CHUNK_IEND) break;
+
+            pos = end;
+        }
+
+        if (!sawIdat) {
+            return result(ImageFormat.PNG, Damage.UNRECOVERABLE, "no IDAT chunk");
+        }
+        return badCrc
+                ? result(ImageFormat.PNG, Damage.BAD_CRC, null)
+                : result(ImageFormat.PNG, Damage.NONE, null);
+    }
+
+    /** 4 lettres ASCII */
+    private static boolean isChunkType(int type) {
+        for (int shift = 24; shift >= 0; shift -= 8) {
+            int c = (type >>> shift) & 0xFF;
+            if (!((c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z'))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /* =========================================================
+       JPEG
+       ========================================================= */
+
+    private static Result checkJpeg(FileChannel channel, long size) throws IOException {
+
+        ByteBuffer buffer = BUFFER.get();
+        long pos = 2;
+        boolean sawFrame = false;
+
+        // segments d'en-tête jusqu'au début des données (SOS)
+        while (true) {
+
+            if (pos + 4 > size) {
+                return result(ImageFormat.JPEG, Damage.UNRECOVERABLE, "header cut before scan data");
+            }
+
+            read(channel, buffer, pos, 4);
+            int prefix = buffer.get() & 0xFF;
+            int marker = buffer.get() & 0xFF;
+
+            if (prefix != 0xFF) {
+                return result(ImageFormat.JPEG, Damage.UNRECOVERABLE, "invalid marker sequence");
+            }
+            if (marker == 0xFF) {
+                pos++;
+                continue;
+            }
+            if (marker == 0x01 || (marker >= 0xD0 && marker <= 0xD8)) {
+                pos += 2;
+                continue;
+            }
+
+            int length = buffer.getShort() & 0xFFFF;
+            if (length < 2) {
+                return result(ImageFormat.JPEG, Damage.UNRECOVERABLE, "invalid segment length");
+            }
+
+            if (marker >= 0xC0 && marker <= 0xCF
+                    && marker != 0xC4 && marker != 0xC8 && marker != 0xCC) {
+                sawFrame = true;
+            }
+
+            if (marker == 0xDA) {
+                if (!sawFrame) {
+                    return result(ImageFormat.JPEG, Damage.UNRECOVERABLE, "scan without frame header");
+                }
+                break;
+            }
+
+            pos += 2 + length;
+        }
+
+        // EOI à la fin (en tolérant des octets parasites après)
+        int tail = (int) Math.min(JPEG_TAIL_BYTES, size - pos);
+        read(channel, buffer, size - tail, tail);
+
+        for (int i = tail - 2; i >= 0; i--) {
+            if ((buffer.get(i) & 0xFF) == 0xFF && (buffer.get(i + 1) & 0xFF) == 0xD9) {
+                return result(ImageFormat.JPEG, Damage.NONE, null);
+            }
+        }
+
+        return result(ImageFormat.JPEG, Damage.TRUNCATED, "missing EOI");
+    }
+
+    /* =========================================================
+       OUTILS
+       ========================================================= */
+
+    private static Result result(ImageFormat format, Damage damage, String detail) {
+        return new Result(format, damage, detail);
+    }
+
+    private static boolean hasExtensionOf(File file, ImageFormat format) {
+        String name = file.getName().toLowerCase();
+        switch (format) {
+            case JPEG:
+                return name.endsWith(".jpg") || name.endsWith(".jpeg");
+            case HEIC:
+                return name.endsWith(".heic") || name.endsWith(".heif");
+            default:
+                return name.endsWith(format.extension());
+        }
+    }
+
+    /**
+     * Lit jusqu'à {@code length} octets à {@code position} ; le tampon est
+     * prêt à être lu (position 0, limite = octets lus).
+     */
+    private static int read(FileChannel channel, ByteBuffer buffer, long position, int length)
+            throws IOException {
+
+        buffer.clear();
+        buffer.limit(Math.min(length, buffer.capacity()));
+
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, position + buffer.position());
+            if (n < 0) break;
+        }
+
+        buffer.flip();
+        return buffer.remaining();
+    }
+}
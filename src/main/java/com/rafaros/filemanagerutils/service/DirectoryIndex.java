@@ -0,0 +1,424 @@
+package com.rafaros.filemanagerutils.service;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Index persistant d'une arborescence, pour les parcours répétés des mêmes racines.
+ * <p>
+ * Pour chaque dossier : sa mtime, ses fichiers (nom, taille, mtime) et ses
+ * sous-dossiers. Au parcours suivant, un dossier dont la mtime n'a pas changé
+ * n'est pas relisté : ses fichiers viennent de l'index ; seuls ses
+ * sous-dossiers sont consultés (un {@code stat} chacun). La mtime d'un dossier
+ * change quand une entrée y est ajoutée, supprimée ou renommée — pas quand le
+ * contenu d'un fichier change, la taille / mtime indexées d'un fichier peuvent
+ * donc dater.
+ * <p>
+ * Un dossier modifié moins de {@value #RACY_WINDOW_MILLIS} ms avant
+ * l'écriture de l'index est toujours relisté (résolution des horodatages).
+ * <p>
+ * Fichier {@code ~/.filemanagerutils/index/<racine>-<génération>.idx}, mappé
+ * en lecture ; les enregistrements ne sont décodés que pour les dossiers
+ * inchangés. Chaque parcours écrit une nouvelle génération : sous Windows un
+ * fichier mappé ne peut pas être remplacé, les anciennes générations sont
+ * supprimées dès qu'elles ne sont plus mappées.
+ */
+public class DirectoryIndex {
+
+    private static final int MAGIC = 0x464D4449; // "FMDI"
+    private static final int VERSION = 1;
+
+    /** taille du pied : offset de la table, date d'écriture, magic */
+    private static final int FOOTER_BYTES = 8 + 8 + 4;
+
+    static final long RACY_WINDOW_MILLIS = 2000;
+
+    /** Fichier d'un dossier, tel qu'indexé */
+    static final class FileEntry {
+        final String name;
+        final long size;
+        final long mtime;
+
+        FileEntry(String name, long size, long mtime) {
+            this.name = name;
+            this.size = size;
+            this.mtime = mtime;
+        }
+    }
+
+    /** Contenu indexé d'un dossier */
+    static final class DirectoryRecord {
+        final long mtime;
+        final List<FileEntry> files;
+        final List<String> directories;
+
+        DirectoryRecord(long mtime, List<FileEntry> files, List<String> directories) {
+            this.mtime = mtime;
+            this.files = files;
+            this.directories = directories;
+        }
+    }
+
+    private final Path root;
+    private final Path storageDir;
+    private final String prefix;
+
+    // génération chargée (lecture)
+    private final MappedByteBuffer mapped;
+    private final Map<String, Long> offsets;
+    private final long writtenAt;
+
+    // génération en cours d'écriture
+    private Path pendingFile;
+    private DataOutputStream out;
+    private long position;
+    private List<String> pendingDirs;
+    private List<Long> pendingOffsets;
+
+    private DirectoryIndex(Path root, Path storageDir, String prefix,
+                           MappedByteBuffer mapped, Map<String, Long> offsets, long writtenAt) {
+        this.root = root;
+        this.storageDir = storageDir;
+        this.prefix = prefix;
+        this.mapped = mapped;
+        this.offsets = offsets;
+        this.writtenAt = writtenAt;
+    }
+
+    /* =========================================================
+       OUVERTURE
+       ========================================================= */
+
+    /**
+     * Charge la dernière génération de l'index de {@code root}
+     * (index vide si absent ou illisible).
+     */
+    public static DirectoryIndex open(Path root) {
+        Path dir = Path.of(System.getProperty("user.home"), ".filemanagerutils", "index");
+        return open(root, dir);
+    }
+
+    static DirectoryIndex open(Path root, Path storageDir) {
+
+        Path absolute = root.toAbsolutePath().normalize();
+        String prefix = Long.toHexString(ConversionManifest.hashString(absolute.toString())) + "-";
+
+        List<Path> generations = generations(storageDir, prefix);
+
+        // la plus récente d'abord ; les autres sont supprimées si possible
+        for (int i = generations.size() - 1; i >= 0; i--) {
+            Path file = generations.get(i);
+            try {
+                DirectoryIndex index = load(absolute, storageDir, prefix, file);
+                for (int j = 0; j < i; j++) {
+                    deleteQuietly(generations.get(j));
+                }
+                return index;
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Index ignored (" + file.getFileName() + "): " + e.getMessage());
+                deleteQuietly(file);
+            }
+        }
+
+        return new DirectoryIndex(absolute, storageDir, prefix, null, new HashMap<>(), 0);
+    }
+
+    private static DirectoryIndex load(Path root, Path storageDir, String prefix, Path file) throws IOException {
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+
+            long size = channel.size();
+            if (size < 8 + FOOTER_BYTES || size > Integer.MAX_VALUE) {
+                throw new IOException("Invalid index size: " + size);
+            }
+
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION
+                    || buffer.getInt((int) size - 4) != MAGIC) {
+                throw new IOException("Unknown index format");
+            }
+
+            long tableOffset = buffer.getLong((int) size - FOOTER_BYTES);
+            long writtenAt = buffer.getLong((int) size - FOOTER_BYTES + 8);
+
+            ByteBuffer table = buffer.duplicate();
+            table.position((int) tableOffset);
+
+            int count = table.getInt();
+            Map<String, Long> offsets = new HashMap<>(Math.max(16, count * 4 / 3 + 1));
+            for (int i = 0; i < count; i++) {
+                offsets.put(readString(table), table.getLong());
+            }
+
+            return new DirectoryIndex(root, storageDir, prefix, buffer, offsets, writtenAt);
+        }
+    }
+
+    public Path getRoot() {
+        return root;
+    }
+
+    /** nombre de dossiers de la génération chargée */
+    public int size() {
+        return offsets.size();
+    }
+
+    /* =========================================================
+       LECTURE
+       ========================================================= */
+
+    /**
+     * Contenu indexé de {@code dir} si sa mtime est inchangée et assez
+     * ancienne par rapport à l'écriture de l'index ; sinon null (à relister).
+     */
+    DirectoryRecord lookup(Path dir, FileTime mtime) {
+
+        if (mapped == null) return null;
+
+        Long offset = offsets.get(key(dir));
+        if (offset == null) return null;
+
+        long millis = mtime.toMillis();
+        if (millis > writtenAt - RACY_WINDOW_MILLIS) return null;
+
+        ByteBuffer buffer = mapped.duplicate();
+        buffer.position((int) (long) offset);
+
+        if (buffer.getLong() != millis) return null;
+
+        int fileCount = buffer.getInt();
+        List<FileEntry> files = new ArrayList<>(fileCount);
+        for (int i = 0; i < fileCount; i++) {
+            files.add(new FileEntry(readString(buffer), buffer.getLong(), buffer.getLong()));
+        }
+
+        int dirCount = buffer.getInt();
+        List<String> directories = new ArrayList<>(dirCount);
+        for (int i = 0; i < dirCount; i++) {
+            directories.add(readString(buffer));
+        }
+
+        return new DirectoryRecord(millis, files, directories);
+    }
+
+    /* =========================================================
+       ÉCRITURE D'UNE NOUVELLE GÉNÉRATION
+       ========================================================= */
+
+    synchronized void beginGeneration() throws IOException {
+        Files.createDirectories(storageDir);
+        pendingFile = Files.createTempFile(storageDir, prefix, ".tmp");
+        OutputStream os = Files.newOutputStream(pendingFile);
+        out = new DataOutputStream(new BufferedOutputStream(os, 256 * 1024));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        position = 8;
+        pendingDirs = new ArrayList<>();
+        pendingOffsets = new ArrayList<>();
+    }
+
+    /** appelé depuis les tâches du parcours, une fois par dossier */
+    void append(Path dir, DirectoryRecord record) {
+
+        // encodage hors verrou
+        ByteBuffer bytes = encode(record);
+
+        synchronized (this) {
+            if (out == null) return;
+            try {
+                pendingDirs.add(key(dir));
+                pendingOffsets.add(position);
+                out.write(bytes.array(), 0, bytes.position());
+                position += bytes.position();
+            } catch (IOException e) {
+                System.err.println("Index write failed: " + e.getMessage());
+                abortQuietly();
+            }
+        }
+    }
+
+    /**
+     * Termine la génération (table des dossiers + pied) et la publie.
+     */
+    synchronized void commit() throws IOException {
+
+        if (out == null) return;
+
+        try {
+            long tableOffset = position;
+            out.writeInt(pendingDirs.size());
+            for (int i = 0; i < pendingDirs.size(); i++) {
+                byte[] name = pendingDirs.get(i).getBytes(StandardCharsets.UTF_8);
+                out.writeInt(name.length);
+                out.write(name);
+                out.writeLong(pendingOffsets.get(i));
+            }
+            out.writeLong(tableOffset);
+            out.writeLong(System.currentTimeMillis());
+            out.writeInt(MAGIC);
+            out.close();
+            out = null;
+
+            List<Path> existing = generations(storageDir, prefix);
+            long next = existing.isEmpty() ? 1 : generationOf(existing.get(existing.size() - 1), prefix) + 1;
+
+            Path target = storageDir.resolve(prefix + next + ".idx");
+            Files.move(pendingFile, target, StandardCopyOption.ATOMIC_MOVE);
+
+            // anciennes générations (échoue sans conséquence si encore mappées)
+            for (Path old : existing) {
+                deleteQuietly(old);
+            }
+
+        } finally {
+            abortQuietly();
+        }
+    }
+
+    /** abandonne la génération en cours (parcours annulé ou en échec) */
+    synchronized void abort() {
+        abortQuietly();
+    }
+
+    private void abortQuietly() {
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException ignored) {
+            }
+            out = null;
+        }
+        if (pendingFile != null) {
+            deleteQuietly(pendingFile);
+            pendingFile = null;
+        }
+        pendingDirs = null;
+        pendingOffsets = null;
+    }
+
+    /* =========================================================
+       ENCODAGE
+       ========================================================= */
+
+    private static ByteBuffer encode(DirectoryRecord record) {
+
+        List<byte[]> fileNames = new ArrayList<>(record.files.size());
+        List<byte[]> dirNames = new ArrayList<>(record.directories.size());
+
+        int size = 8 + 4 + 4;
+        for (FileEntry file : record.files) {
+            byte[] name = file.name.getBytes(StandardCharsets.UTF_8);
+            fileNames.add(name);
+            size += 4 + name.length + 16;
+        }
+        for (String dir : record.directories) {
+            byte[] name = dir.getBytes(StandardCharsets.UTF_8);
+            dirNames.add(name);
+            size += 4 + name.length;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putLong(record.mtime);
+        buffer.putInt(record.files.size());
+        for (int i = 0; i < record.files.size(); i++) {
+            byte[] name = fileNames.get(i);
+            buffer.putInt(name.length).put(name);
+            buffer.putLong(record.files.get(i).size).putLong(record.files.get(i).mtime);
+        }
+        buffer.putInt(record.directories.size());
+        for (byte[] name : dirNames) {
+            buffer.putInt(name.length).put(name);
+        }
+        return buffer;
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private String key(Path dir) {
+        return root.relativize(dir.toAbsolutePath().normalize()).toString();
+    }
+
+    /* =========================================================
+       GÉNÉRATIONS
+       ========================================================= */
+
+    private static List<Path> generations(Path storageDir, String prefix) {
+        List<Path> files = new ArrayList<>();
+        if (!Files.isDirectory(storageDir)) return files;
+
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(storageDir, prefix + "*.idx")) {
+            for (Path file : stream) {
+                if (generationOf(file, prefix) > 0) files.add(file);
+            }
+        } catch (IOException ignored) {
+        }
+
+        files.sort((a, b) -> Long.compare(generationOf(a, prefix), generationOf(b, prefix)));
+        return files;
+    }
+
+    private static long generationOf(Path file, String prefix) {
+        String name = file.getFileName().toString();
+        try {
+            return Long.parseLong(name.substring(prefix.length(), name.length() - ".idx".length()));
+        } catch (RuntimeException e) {
+            return -1;
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ignored) {
+        }
+    }
+
+    /* =========================================================
+       ATTRIBUTS REPRODUITS DEPUIS L'INDEX
+       ========================================================= */
+
+    /** Attributs d'un fichier régulier indexé, pour les filtres du parcours */
+    static final class IndexedAttributes implements BasicFileAttributes {
+
+        private final FileTime mtime;
+        private final long size;
+
+        IndexedAttributes(FileEntry entry) {
+            this.mtime = FileTime.fromMillis(entry.mtime);
+            this.size = entry.size;
+        }
+
+        @Override public FileTime lastModifiedTime() { return mtime; }
+        @Override public FileTime lastAccessTime() { return mtime; }
+        @Override public FileTime creationTime() { return mtime; }
+        @Override public boolean isRegularFile() { return true; }
+        @Override public boolean isDirectory() { return false; }
+        @Override public boolean isSymbolicLink() { return false; }
+        @Override public boolean isOther() { return false; }
+        @Override public long size() { return size; }
+        @Override public Object fileKey() { return null; }
+    }
+}
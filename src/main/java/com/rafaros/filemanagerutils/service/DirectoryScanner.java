@@ -0,0 +1,406 @@
+package com.rafaros.filemanagerutils.service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.FileVisitOption;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Parcours parallèle d'arborescences, commun à tous les onglets.
+ * <p>
+ * Chaque dossier est listé par une tâche fork/join avec
+ * {@link Files#walkFileTree} en profondeur 1 : les attributs fournis par le
+ * listage (sous Windows, directement par FindNextFile) sont réutilisés par
+ * les filtres, sans nouveau {@code stat} par fichier. Les sous-dossiers
+ * deviennent de nouvelles tâches, réparties par vol de travail.
+ * <p>
+ * Les appels du filtre et du puits pour un même dossier viennent d'un seul
+ * thread, dans l'ordre du listage ; des dossiers différents sont traités en
+ * parallèle, le puits doit donc être thread-safe.
+ * Un dossier illisible est ignoré (signalé sur {@code System.err}).
+ * <p>
+ * Avec un {@link DirectoryIndex}, les dossiers dont la mtime n'a pas changé
+ * depuis le parcours précédent ne sont pas relistés ; une nouvelle génération
+ * de l'index est écrite à la fin d'un parcours complet.
+ */
+public class DirectoryScanner {
+
+    /** Sélection des fichiers, à partir des attributs déjà lus */
+    public interface Filter {
+
+        Filter ALL = (file, attrs) -> true;
+
+        boolean accept(Path file, BasicFileAttributes attrs);
+
+        default Filter and(Filter other) {
+            return (file, attrs) -> accept(file, attrs) && other.accept(file, attrs);
+        }
+    }
+
+    /** Reçoit les fichiers retenus */
+    public interface Sink {
+        void accept(Path file, BasicFileAttributes attrs);
+    }
+
+    private static final int DEFAULT_THREADS = Integer.getInteger(
+            "filemanager.scan.threads",
+            Math.max(4, Math.min(16, Runtime.getRuntime().availableProcessors() * 2)));
+
+    /** taille de la file entre le parcours et un consommateur de flux */
+    private static final int STREAM_QUEUE = 8192;
+
+    private static final DirectoryScanner SHARED = new DirectoryScanner(DEFAULT_THREADS);
+
+    private final ForkJoinPool pool;
+
+    public static DirectoryScanner shared() {
+        return SHARED;
+    }
+
+    public DirectoryScanner(int threads) {
+        this.pool = new ForkJoinPool(
+                Math.max(1, threads),
+                p -> {
+                    ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+                    t.setName("directory-scan-" + t.getPoolIndex());
+                    t.setDaemon(true);
+                    return t;
+                },
+                null,
+                false);
+    }
+
+    /* =========================================================
+       API
+       ========================================================= */
+
+    /**
+     * Parcourt {@code root} et passe les fichiers réguliers acceptés à {@code sink}.
+     * Bloque jusqu'à la fin du parcours.
+     */
+    public void scan(Path root, Filter filter, Sink sink) {
+        scan(root, filter, sink, null, null, new AtomicBoolean());
+    }
+
+    /** Idem, en s'appuyant sur l'index de la racine (peut être null) */
+    public void scan(Path root, Filter filter, Sink sink, DirectoryIndex index) {
+        scan(root, filter, sink, null, index, new AtomicBoolean());
+    }
+
+    /** Nombre de fichiers réguliers acceptés */
+    public long count(Path root, Filter filter) {
+        return count(root, filter, null);
+    }
+
+    public long count(Path root, Filter filter, DirectoryIndex index) {
+        AtomicLong count = new AtomicLong();
+        scan(root, filter, (file, attrs) -> count.incrementAndGet(), index);
+        return count.get();
+    }
+
+    /** Fichiers réguliers acceptés (ordre du listage à l'intérieur d'un dossier) */
+    public List<Path> collect(Path root, Filter filter) {
+        return collect(root, filter, null);
+    }
+
+    public List<Path> collect(Path root, Filter filter, DirectoryIndex index) {
+        ConcurrentLinkedQueue<Path> files = new ConcurrentLinkedQueue<>();
+        scan(root, filter, (file, attrs) -> files.add(file), index);
+        return new ArrayList<>(files);
+    }
+
+    /**
+     * Tous les sous-dossiers de {@code root} (racine exclue).
+     */
+    public List<Path> directories(Path root) {
+        ConcurrentLinkedQueue<Path> dirs = new ConcurrentLinkedQueue<>();
+        scan(root, (file, attrs) -> false, (file, attrs) -> { }, dirs::add, null, new AtomicBoolean());
+        return new ArrayList<>(dirs);
+    }
+
+    /**
+     * Flux des fichiers acceptés, produit en arrière-plan pendant que le
+     * consommateur lit. Fermer le flux arrête le parcours.
+     */
+    public Stream<Path> stream(Path root, Filter filter) {
+        return stream(root, filter, null);
+    }
+
+    public Stream<Path> stream(Path root, Filter filter, DirectoryIndex index) {
+
+        BlockingQueue<Object> queue = new ArrayBlockingQueue<>(STREAM_QUEUE);
+        AtomicBoolean cancelled = new AtomicBoolean();
+        Object end = new Object();
+
+        Thread producer = new Thread(() -> {
+            try {
+                scan(root, filter, (file, attrs) -> offer(queue, file, cancelled), null, index, cancelled);
+            } catch (RuntimeException e) {
+                queue.clear();
+                queue.offer(e);
+                return;
+            }
+            offer(queue, end, cancelled);
+        }, "directory-scan-stream");
+        producer.setDaemon(true);
+        producer.start();
+
+        Iterator<Path> iterator = new Iterator<>() {
+            private Object next;
+
+            @Override
+            public boolean hasNext() {
+                if (next == null) {
+                    try {
+                        next = queue.take();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        cancelled.set(true);
+                        return false;
+                    }
+                    if (next instanceof RuntimeException) {
+                        throw (RuntimeException) next;
+                    }
+                }
+                return next != end;
+            }
+
+            @Override
+            public Path next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                Path path = (Path) next;
+                next = null;
+                return path;
+            }
+        };
+
+        return StreamSupport.stream(
+                        Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL),
+                        false)
+                .onClose(() -> {
+                    cancelled.set(true);
+                    queue.clear();
+                });
+    }
+
+    /** attend une place sans bloquer indéfiniment un flux fermé */
+    private static void offer(BlockingQueue<Object> queue, Object item, AtomicBoolean cancelled) {
+        try {
+            while (!cancelled.get() && !queue.offer(item, 100, TimeUnit.MILLISECONDS)) {
+                // consommateur plus lent que le parcours
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancelled.set(true);
+        }
+    }
+
+    /* =========================================================
+       PARCOURS
+       ========================================================= */
+
+    private void scan(Path root, Filter filter, Sink sink, DirectorySink dirSink,
+                      DirectoryIndex index, AtomicBoolean cancelled) {
+
+        if (!Files.isDirectory(root)) {
+            throw new UncheckedIOException(new IOException("Not a directory: " + root));
+        }
+
+        if (index != null) {
+            try {
+                index.beginGeneration();
+            } catch (IOException e) {
+                System.err.println("Index disabled for " + root + ": " + e.getMessage());
+                index = null;
+            }
+        }
+
+        boolean complete = false;
+        try {
+            pool.invoke(new DirectoryTask(root, null, filter, sink, dirSink, index, cancelled));
+            complete = !cancelled.get();
+        } finally {
+            if (index != null) {
+                if (complete) {
+                    try {
+                        index.commit();
+                    } catch (IOException e) {
+                        System.err.println("Index not saved for " + root + ": " + e.getMessage());
+                    }
+                } else {
+                    // parcours partiel : l'index précédent reste valable
+                    index.abort();
+                }
+            }
+        }
+    }
+
+    private interface DirectorySink {
+        void accept(Path directory);
+    }
+
+    private static final class DirectoryTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Path directory;
+        private final BasicFileAttributes attributes;
+        private final Filter filter;
+        private final Sink sink;
+        private final DirectorySink dirSink;
+        private final DirectoryIndex index;
+        private final AtomicBoolean cancelled;
+
+        DirectoryTask(Path directory, BasicFileAttributes attributes, Filter filter, Sink sink,
+                      DirectorySink dirSink, DirectoryIndex index, AtomicBoolean cancelled) {
+            this.directory = directory;
+            this.attributes = attributes;
+            this.filter = filter;
+            this.sink = sink;
+            this.dirSink = dirSink;
+            this.index = index;
+            this.cancelled = cancelled;
+        }
+
+        @Override
+        protected void compute() {
+
+            if (cancelled.get()) return;
+
+            List<DirectoryTask> children = new ArrayList<>();
+
+            if (index == null || !replay(children)) {
+                list(children);
+            }
+
+            for (DirectoryTask child : children) {
+                child.join();
+            }
+        }
+
+        /** contenu repris de l'index si le dossier n'a pas changé */
+        private boolean replay(List<DirectoryTask> children) {
+
+            BasicFileAttributes attrs = attributes;
+            try {
+                if (attrs == null) {
+                    attrs = Files.readAttributes(directory, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                }
+            } catch (IOException e) {
+                // disparu depuis le listage du parent
+                return true;
+            }
+
+            DirectoryIndex.DirectoryRecord record = index.lookup(directory, attrs.lastModifiedTime());
+            if (record == null) return false;
+
+            for (String name : record.directories) {
+                Path dir = directory.resolve(name);
+                if (dirSink != null) dirSink.accept(dir);
+                fork(dir, null, children);
+            }
+
+            for (DirectoryIndex.FileEntry entry : record.files) {
+                if (cancelled.get()) return true;
+                Path file = directory.resolve(entry.name);
+                BasicFileAttributes fileAttrs = new DirectoryIndex.IndexedAttributes(entry);
+                if (filter.accept(file, fileAttrs)) {
+                    sink.accept(file, fileAttrs);
+                }
+            }
+
+            index.append(directory, record);
+            return true;
+        }
+
+        private void list(List<DirectoryTask> children) {
+
+            List<DirectoryIndex.FileEntry> files = index != null ? new ArrayList<>() : null;
+            List<String> directories = index != null ? new ArrayList<>() : null;
+            long[] mtime = {Long.MIN_VALUE};
+
+            try {
+                Files.walkFileTree(directory, EnumSet.noneOf(FileVisitOption.class), 1,
+                        new SimpleFileVisitor<>() {
+                            @Override
+                            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                                mtime[0] = attrs.lastModifiedTime().toMillis();
+                                return FileVisitResult.CONTINUE;
+                            }
+
+                            @Override
+                            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                                if (cancelled.get()) {
+                                    return FileVisitResult.TERMINATE;
+                                }
+                                if (attrs.isDirectory()) {
+                                    if (dirSink != null) dirSink.accept(file);
+                                    if (directories != null) directories.add(file.getFileName().toString());
+                                    fork(file, attrs, children);
+                                } else if (attrs.isRegularFile()) {
+                                    if (files != null) {
+                                        files.add(new DirectoryIndex.FileEntry(file.getFileName().toString(),
+                                                attrs.size(), attrs.lastModifiedTime().toMillis()));
+                                    }
+                                    if (filter.accept(file, attrs)) {
+                                        sink.accept(file, attrs);
+                                    }
+                                }
+                                return FileVisitResult.CONTINUE;
+                            }
+
+                            @Override
+                            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                                System.err.println("Scan skipped: " + file + " (" + e.getMessage() + ")");
+                                return FileVisitResult.CONTINUE;
+                            }
+                        });
+            } catch (IOException e) {
+                System.err.println("Scan skipped: " + directory + " (" + e.getMessage() + ")");
+                return;
+            }
+
+            if (index != null && mtime[0] != Long.MIN_VALUE && !cancelled.get()) {
+                index.append(directory, new DirectoryIndex.DirectoryRecord(mtime[0], files, directories));
+            }
+        }
+
+        private void fork(Path dir, BasicFileAttributes attrs, List<DirectoryTask> children) {
+            DirectoryTask child = new DirectoryTask(dir, attrs, filter, sink, dirSink, index, cancelled);
+            child.fork();
+            children.add(child);
+        }
+    }
+
+    /* =========================================================
+       FILTRES USUELS
+       ========================================================= */
+
+    /** Nom de fichier se terminant par l'une des extensions (insensible à la casse) */
+    public static Filter extensions(String... extensions) {
+        return ExtensionClassifier.of(extensions);
+    }
+}
@@ -0,0 +1,141 @@
+package com.rafaros.filemanagerutils.service;
+
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * Reconnaissance des extensions de fichier, commune à tous les filtres d'images.
+ * <p>
+ * Seuls les derniers caractères du nom sont lus (jusqu'au point) : ils sont
+ * mis en minuscules ASCII et empaquetés dans un {@code long}, cherché dans une
+ * petite table à adressage ouvert. Aucune allocation par appel, pas d'expression
+ * régulière sur le chemin complet.
+ * <p>
+ * Les ensembles de chaque onglet sont réglables par
+ * {@code -Dfilemanager.extensions.<onglet>=jpg,png,…}.
+ */
+public final class ExtensionClassifier implements DirectoryScanner.Filter {
+
+    /** au-delà, l'extension ne tient plus dans un long */
+    private static final int MAX_LENGTH = 8;
+
+    /** Génération des listes de fichiers */
+    public static final ExtensionClassifier FILE_LIST =
+            preset("fileList", "jpg", "jpeg", "png", "bmp", "webp", "gif");
+
+    /** Sélection d'images (onglet renommage / déplacement) */
+    public static final ExtensionClassifier SELECTION =
+            preset("selection", "png", "jpg", "jpeg");
+
+    /** Renommage du contenu d'un dossier */
+    public static final ExtensionClassifier RENAME =
+            preset("rename", "jpg", "jpeg", "png");
+
+    private final long[] table;
+    private final int mask;
+
+    private ExtensionClassifier(long[] table) {
+        this.table = table;
+        this.mask = table.length - 1;
+    }
+
+    /**
+     * Classifieur pour les extensions données (avec ou sans point,
+     * insensible à la casse).
+     */
+    public static ExtensionClassifier of(String... extensions) {
+
+        int capacity = 8;
+        while (capacity < extensions.length * 2) {
+            capacity <<= 1;
+        }
+        long[] table = new long[capacity];
+
+        for (String extension : extensions) {
+            String ext = extension.trim();
+            long key = suffixKey(ext.startsWith(".") ? ext : "." + ext);
+            if (key == 0) {
+                throw new IllegalArgumentException("Unsupported extension: " + extension);
+            }
+            int slot = slot(key, capacity - 1);
+            while (table[slot] != 0 && table[slot] != key) {
+                slot = (slot + 1) & (capacity - 1);
+            }
+            table[slot] = key;
+        }
+
+        return new ExtensionClassifier(table);
+    }
+
+    private static ExtensionClassifier preset(String tab, String... defaults) {
+        String configured = System.getProperty("filemanager.extensions." + tab);
+        if (configured != null && !configured.isBlank()) {
+            try {
+                return of(configured.split(","));
+            } catch (IllegalArgumentException e) {
+                System.err.println("Ignored filemanager.extensions." + tab + ": " + e.getMessage());
+            }
+        }
+        return of(defaults);
+    }
+
+    /* =========================================================
+       TEST
+       ========================================================= */
+
+    /** Nom ou chemin complet : seule l'extension du dernier élément compte */
+    public boolean matches(CharSequence name) {
+        long key = suffixKey(name);
+        if (key == 0) return false;
+
+        int slot = slot(key, mask);
+        long candidate;
+        while ((candidate = table[slot]) != 0) {
+            if (candidate == key) return true;
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    public boolean matches(Path file) {
+        // toString() est mémorisé par Path, contrairement à getFileName()
+        return matches(file.toString());
+    }
+
+    @Override
+    public boolean accept(Path file, BasicFileAttributes attrs) {
+        return matches(file.toString());
+    }
+
+    /**
+     * Extension après le dernier point, en minuscules, un caractère par octet
+     * (le dernier dans l'octet de poids faible) ; 0 si absente, trop longue
+     * ou non ASCII.
+     */
+    private static long suffixKey(CharSequence name) {
+        long key = 0;
+        int length = 0;
+
+        for (int i = name.length() - 1; i >= 0; i--) {
+            char c = name.charAt(i);
+
+            if (c == '.') {
+                return length == 0 ? 0 : key;
+            }
+            if (c == '/' || c == '\\' || c >= 0x80 || length == MAX_LENGTH) {
+                return 0;
+            }
+            if (c >= 'A' && c <= 'Z') {
+                c += 'a' - 'A';
+            }
+            key |= (long) c << (8 * length);
+            length++;
+        }
+        return 0;
+    }
+
+    private static int slot(long key, int mask) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h >>> 40) & mask;
+    }
+}
@@ -15,6 +15,8 @@ import java.nio.file.*;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 public class FileExtensionService {
 
@@ -23,17 +25,69 @@ public class FileExtensionService {
     }
 
 
+    /** Nombre de workers par étape ; surchargeable via -Dfilemanager.workers=N */
+    private static final int DEFAULT_WORKERS =
+            Integer.getInteger("filemanager.workers", Runtime.getRuntime().availableProcessors());
+
     private final MessageService messageService = new MessageService();
     private final CorruptedRepairService corruptedRepairService = new CorruptedRepairService();
+    private final MagickWorkerPool magickPool = MagickWorkerPool.shared();
+    private final ImageFormatSniffer sniffer = ImageFormatSniffer.shared();
+    private final TiledJpegConverter tiledConverter = new TiledJpegConverter();
+
+    private int workerCount = DEFAULT_WORKERS;
+
+    /** noms pris dans les dossiers cibles, renouvelé à chaque opération */
+    private volatile NameReservationService names = new NameReservationService();
+
+    public int getWorkerCount() {
+        return workerCount;
+    }
+
+    public void setWorkerCount(int workerCount) {
+        this.workerCount = Math.max(1, workerCount);
+    }
 
     /* =========================================================
        EXTENSION / CONVERSION SÉCURISÉE
        ========================================================= */
     public boolean changeSingleFileExtension(File file, String newExtension, File corruptedDir) {
 
-        if (file == null || !file.exists() || newExtension == null || newExtension.isBlank()) {
+        ConversionJob job = prepareConversion(file, newExtension, corruptedDir);
+
+        if (job == null) {
+            return false;
+        }
+
+        try {
+
+            readSource(job);
+            decode(job);
+            encode(job);
+            commit(job);
+
+            return true;
+
+        } catch (Exception e) {
+
+            fail(job, e);
             return false;
         }
+    }
+
+    /* =========================================================
+       ÉTAPES DE CONVERSION (utilisées aussi par ConversionPipeline)
+       ========================================================= */
+
+    /**
+     * Étape 0 : calcule la route de conversion et le fichier de sortie.
+     * Retourne null si le fichier ou l'extension sont invalides.
+     */
+    ConversionJob prepareConversion(File file, String newExtension, File corruptedDir) {
+
+        if (file == null || !file.exists() || newExtension == null || newExtension.isBlank()) {
+            return null;
+        }
 
         newExtension = newExtension.replaceFirst("^\\.", "").toLowerCase();
 
@@ -47,29 +101,130 @@ public class FileExtensionService {
                 ? new File(parentDir, baseName + "_converted." + newExtension)
                 : new File(parentDir, baseName + "." + newExtension);
 
-        try {
+        // le contenu réel prime sur l'extension (fichiers mal nommés)
+        ImageFormat format = sniffer.sniff(file);
+
+        boolean toJpeg = newExtension.equals("jpg") || newExtension.equals("jpeg");
+
+        ConversionJob.Route route;
+
+        if (format == ImageFormat.UNKNOWN) {
+
+            if (srcExt.equals(".png") && newExtension.equals("jpg")) {
+                route = ConversionJob.Route.DECODE_TO_JPG;
+            } else if (srcExt.equals(".heic")
+                    || srcExt.equals(".jpeg")
+                    || srcExt.equals(".jpg")) {
+                route = ConversionJob.Route.EXTERNAL;
+            } else {
+                route = ConversionJob.Route.RENAME;
+            }
+
+        } else if (toJpeg && format == ImageFormat.JPEG) {
+            route = ConversionJob.Route.REENCODE_JPEG;
+        } else if (toJpeg
+                && (format == ImageFormat.PNG || format == ImageFormat.GIF || format == ImageFormat.BMP)) {
+            route = ConversionJob.Route.DECODE_TO_JPG;
+        } else if (format.extension().equals("." + newExtension)) {
+            // contenu déjà au format demandé : simple renommage
+            route = ConversionJob.Route.RENAME;
+        } else {
+            route = ConversionJob.Route.EXTERNAL;
+        }
+
+        return new ConversionJob(file, corruptedDir, baseName, sameExtension, outputFile, route);
+    }
+
+    /**
+     * Étape 1 (I/O) : charge le fichier source en mémoire pour que le décodage
+     * n'attende plus le disque.
+     */
+    void readSource(ConversionJob job) throws IOException {
+
+        if (job.route == ConversionJob.Route.DECODE_TO_JPG
+                || job.route == ConversionJob.Route.REENCODE_JPEG) {
+            job.sourceBytes = Files.readAllBytes(job.source.toPath());
+        }
+    }
+
+    /**
+     * Étape 2 (CPU) : décodage en mémoire. Un échec n'est pas fatal :
+     * l'encodage tentera alors la réparation ImageMagick (ou la route externe
+     * pour un JPEG).
+     */
+    void decode(ConversionJob job) {
+
+        if (job.route == ConversionJob.Route.REENCODE_JPEG
+                && !JpegHeader.canReencodeInJvm(job.sourceBytes)) {
+            job.sourceBytes = null;
+            return;
+        }
+
+        if (job.route != ConversionJob.Route.DECODE_TO_JPG
+                && job.route != ConversionJob.Route.REENCODE_JPEG) {
+            return;
+        }
+
+        try (ImageInputStream iis = ImageIO.createImageInputStream(
+                new ByteArrayInputStream(job.sourceBytes))) {
+
+            ImageReader reader = openReader(iis);
+
+            try {
+                // très grande image : pas de décodage complet, l'encodage passera par bandes
+                if (TiledJpegConverter.isLarge(reader.getWidth(0), reader.getHeight(0))) {
+                    job.tiled = true;
+                    return;
+                }
+
+                job.image = reader.read(0);
+
+            } finally {
+                reader.dispose();
+            }
+
+        } catch (Exception ignored) {
+        } finally {
+            job.sourceBytes = null;
+        }
+    }
+
+    /**
+     * Étape 3 : écriture du fichier de sortie (ImageIO ou outils externes).
+     */
+    void encode(ConversionJob job) throws IOException {
+
+        switch (job.route) {
 
         /* ===============================
-           PNG → JPG
+           PNG / GIF / BMP → JPG
            =============================== */
 
-            if (srcExt.equals(".png") && newExtension.equals("jpg")) {
+            case DECODE_TO_JPG: {
 
                 boolean converted = false;
 
-                try {
-                    convertToJpg(file, outputFile);
-                    converted = true;
-                } catch (Exception ignored) {}
+                if (job.tiled) {
+                    try {
+                        tiledConverter.convert(job.source, job.outputFile);
+                        converted = true;
+                    } catch (Exception ignored) {}
+                } else if (job.image != null) {
+                    try {
+                        writeJpg(job.image, job.outputFile);
+                        converted = true;
+                    } catch (Exception ignored) {}
+                    job.image = null;
+                }
 
                 if (!converted) {
 
-                    File repaired = new File(parentDir, baseName + "_repaired.png");
+                    File repaired = new File(job.source.getParentFile(), job.baseName + "_repaired.png");
 
-                    if (repairImageWithMagick(file, repaired)) {
+                    if (repairImageWithMagick(job.source, repaired)) {
 
                         try {
-                            convertToJpg(repaired, outputFile);
+                            convertToJpg(repaired, job.outputFile);
                             converted = true;
                         } catch (Exception ignored) {}
 
@@ -80,143 +235,128 @@ public class FileExtensionService {
                 if (!converted) {
                     throw new IOException("PNG → JPG failed");
                 }
+                break;
             }
 
         /* ===============================
-           HEIC / JPEG
+           JPEG → JPG dans la JVM
            =============================== */
 
-            else if (isActuallyHeic(file)
-                    || srcExt.equals(".heic")
-                    || srcExt.equals(".jpeg")
-                    || srcExt.equals(".jpg")) {
-
-                boolean success =
-                        convertWithImageMagick(file, outputFile)
-                                || convertWithHeifDec(file, outputFile);
+            case REENCODE_JPEG: {
+
+                if (job.tiled) {
+                    try {
+                        tiledConverter.convert(job.source, job.outputFile);
+                        break;
+                    } catch (Exception ignored) {}
+                } else if (job.image != null) {
+                    BufferedImage image = job.image;
+                    job.image = null;
+                    try {
+                        writeJpg(image, job.outputFile);
+                        break;
+                    } catch (Exception ignored) {}
+                }
 
-                if (!success) {
-                    throw new IOException("HEIC/JPEG conversion failed");
+                // orientation EXIF, ICC, CMYK ou décodage impossible
+                if (!convertExternally(job)) {
+                    throw new IOException("JPEG re-encode failed");
                 }
+                break;
             }
 
         /* ===============================
-           AUTRES : simple renommage
+           HEIC / JPEG
            =============================== */
 
-            else {
+            case EXTERNAL: {
 
-                if (!sameExtension) {
-                    Files.move(file.toPath(),
-                            outputFile.toPath(),
-                            StandardCopyOption.REPLACE_EXISTING);
-                    return true;
+                if (!convertExternally(job)) {
+                    throw new IOException("HEIC/JPEG conversion failed");
                 }
-
-                return true;
+                break;
             }
 
         /* ===============================
-           remplacement sécurisé
+           AUTRES : simple renommage (fait au commit)
            =============================== */
 
-            if (sameExtension) {
+            default:
+                break;
+        }
+    }
 
-                Files.deleteIfExists(file.toPath());
+    /**
+     * Étape 4 : remplacement sécurisé de l'original.
+     */
+    void commit(ConversionJob job) throws IOException {
 
-                Files.move(
-                        outputFile.toPath(),
-                        file.toPath(),
-                        StandardCopyOption.REPLACE_EXISTING
-                );
+        File file = job.source;
 
-            } else {
+        if (job.route == ConversionJob.Route.RENAME) {
 
-                Files.deleteIfExists(file.toPath());
+            if (!job.sameExtension) {
+                Files.move(file.toPath(),
+                        job.outputFile.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING);
             }
+            return;
+        }
 
-            return true;
-
-        } catch (Exception e) {
+        if (job.sameExtension) {
 
-            System.err.println("Conversion failed: "
-                    + file.getName() + " (" + e.getMessage() + ")");
+            Files.deleteIfExists(file.toPath());
 
-            moveToCorrupted(file, corruptedDir);
+            Files.move(
+                    job.outputFile.toPath(),
+                    file.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING
+            );
 
-            try {
-                Files.deleteIfExists(outputFile.toPath());
-            } catch (IOException ignored) {}
+        } else {
 
-            return false;
+            Files.deleteIfExists(file.toPath());
         }
     }
 
     /**
-     * Tente de réparer un PNG corrompu avec ImageMagick en ignorant les CRC.
+     * Isole un échec : l'original part dans corrupted/, la sortie partielle est supprimée.
+     * Retourne l'emplacement du fichier dans corrupted/ (ou null).
      */
-    private boolean repairImageWithMagick(File inputFile, File outputFile) {
-        try {
-            ProcessBuilder pb = new ProcessBuilder(
-                    "magick",
-                    inputFile.getAbsolutePath(),
-                    "-define", "png:ignore-crc=TRUE",
-                    "-background", "white",
-                    "-alpha", "remove",
-                    outputFile.getAbsolutePath()
-            );
-            pb.redirectErrorStream(true);
-            Process process = pb.start();
-            process.waitFor();
-            return process.exitValue() == 0 && outputFile.exists();
-        } catch (Exception e) {
-            e.printStackTrace();
-            return false;
-        }
-    }
-
-    /* =========================================================
-       CONVERSIONS
-       ========================================================= */
-    private boolean convertWithImageMagick(File inputFile, File outputFile) {
-
-        try {
-
-            ProcessBuilder pb = new ProcessBuilder(
-                    "magick",
-                    inputFile.getAbsolutePath(),
-                    "-auto-orient",
-                    "-colorspace", "sRGB",
-                    "-depth", "8",
-                    "-type", "TrueColor",
-                    "-alpha", "remove",
-                    "-strip",
-                    "-sampling-factor", "4:2:0",
-                    "-interlace", "Plane",
-                    "-quality", "82",
-                    outputFile.getAbsolutePath()
-            );
+    File fail(ConversionJob job, Throwable e) {
 
-            pb.redirectErrorStream(true);
+        System.err.println("Conversion failed: "
+                + job.source.getName() + " (" + e.getMessage() + ")");
 
-            Process process = pb.start();
+        job.image = null;
+        job.sourceBytes = null;
 
-            try (BufferedReader reader =
-                         new BufferedReader(
-                                 new InputStreamReader(process.getInputStream()))) {
+        File moved = moveToCorrupted(job.source, job.corruptedDir);
 
-                while (reader.readLine() != null) {}
-            }
+        try {
+            Files.deleteIfExists(job.outputFile.toPath());
+        } catch (IOException ignored) {}
 
-            int exitCode = process.waitFor();
+        return moved;
+    }
 
-            return exitCode == 0 && outputFile.exists();
+    /**
+     * Tente de réparer un PNG corrompu avec ImageMagick en ignorant les CRC.
+     */
+    private boolean repairImageWithMagick(File inputFile, File outputFile) {
+        return magickPool.convert(MagickWorkerPool.Profile.REPAIR_FLATTEN, inputFile, outputFile);
+    }
 
-        } catch (Exception e) {
+    /* =========================================================
+       CONVERSIONS
+       ========================================================= */
+    private boolean convertExternally(ConversionJob job) {
+        return convertWithImageMagick(job.source, job.outputFile)
+                || convertWithHeifDec(job.source, job.outputFile);
+    }
 
-            e.printStackTrace();
-            return false;
-        }
+    private boolean convertWithImageMagick(File inputFile, File outputFile) {
+        return magickPool.convert(MagickWorkerPool.Profile.JPEG_WEB, inputFile, outputFile);
     }
 
 
@@ -247,41 +387,60 @@ public class FileExtensionService {
 
     private void convertToJpg(File input, File output) throws IOException {
 
+        if (TiledJpegConverter.isLarge(input)) {
+            tiledConverter.convert(input, output);
+            return;
+        }
+
         BufferedImage image;
 
         try (ImageInputStream iis = ImageIO.createImageInputStream(input)) {
+            image = readImage(iis);
+        }
 
-            Iterator<ImageReader> readers = ImageIO.getImageReaders(iis);
+        writeJpg(image, output);
+    }
 
-            if (!readers.hasNext()) {
-                throw new IOException("No ImageReader found");
-            }
+    private BufferedImage readImage(ImageInputStream iis) throws IOException {
 
-            ImageReader reader = readers.next();
+        ImageReader reader = openReader(iis);
 
-            try {
+        try {
 
-                reader.setInput(iis, true);
+            return reader.read(0);
 
-                image = reader.read(0);
+        } finally {
 
-            } finally {
+            reader.dispose();
+        }
+    }
 
-                reader.dispose();
-            }
+    private ImageReader openReader(ImageInputStream iis) throws IOException {
+
+        if (iis == null) {
+            throw new IOException("No ImageInputStream");
         }
 
-        BufferedImage rgbImage = new BufferedImage(
-                image.getWidth(),
-                image.getHeight(),
-                BufferedImage.TYPE_INT_RGB
-        );
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(iis);
 
-        Graphics2D g = rgbImage.createGraphics();
-        g.drawImage(image, 0, 0, Color.WHITE, null);
-        g.dispose();
+        if (!readers.hasNext()) {
+            throw new IOException("No ImageReader found");
+        }
 
-        ImageIO.write(rgbImage, "jpg", output);
+        ImageReader reader = readers.next();
+        reader.setInput(iis, true);
+        return reader;
+    }
+
+    private void writeJpg(BufferedImage image, File output) throws IOException {
+
+        BufferedImage rgbImage = RgbFlattener.flattenOnWhite(image);
+
+        try {
+            JpegEncoder.write(rgbImage, output, true);
+        } finally {
+            RgbFlattener.release(rgbImage);
+        }
     }
 
     /**
@@ -303,58 +462,22 @@ public class FileExtensionService {
        HEIC DÉTECTION
        ========================================================= */
     public boolean isActuallyHeic(File file) {
-
-        try (FileInputStream fis = new FileInputStream(file)) {
-
-            byte[] header = new byte[32];
-
-            int read = fis.read(header);
-
-            if (read < 12) return false;
-
-            String headerStr = new String(header);
-
-            return headerStr.contains("ftypheic")
-                    || headerStr.contains("ftypheix")
-                    || headerStr.contains("ftyphevc")
-                    || headerStr.contains("ftypmif1");
-
-        } catch (Exception e) {
-
-            return false;
-        }
+        return sniffer.sniff(file) == ImageFormat.HEIC;
     }
 
 
 
-    private void moveToCorrupted(File file, File corruptedDir) {
+    private File moveToCorrupted(File file, File corruptedDir) {
 
         try {
-
-            if (!corruptedDir.exists()) {
-                corruptedDir.mkdirs();
-            }
-
-            String base = getFileNameWithoutExtension(file);
-            String ext = getFileExtension(file);
-
-            Path target = corruptedDir.toPath().resolve(file.getName());
-
-            int i = 1;
-
-            while (Files.exists(target)) {
-
-                target = corruptedDir.toPath()
-                        .resolve(base + "_" + i + ext);
-
-                i++;
-            }
-
-            Files.move(file.toPath(), target);
+            // dossier créé et listé une fois ; les workers se partagent ses noms
+            return names.move(file.toPath(), corruptedDir.toPath(), NameReservationService.Style.SUFFIX)
+                    .toFile();
 
         } catch (Exception e) {
 
             System.err.println("Failed to move corrupted file: " + file.getName());
+            return null;
         }
     }
 
@@ -391,71 +514,111 @@ public class FileExtensionService {
         progressBar.setProgress(0);
         progressBar.setVisible(true);
 
-        Task<Void> task = new Task<>() {
+        names = new NameReservationService();
+
+        Task<RepairReport> task = new Task<>() {
+
+            private final int totalConvert = selectedFiles.size();
+            private final AtomicInteger converted = new AtomicInteger();
+            private final AtomicInteger toRepair = new AtomicInteger();
+            private final AtomicInteger repaired = new AtomicInteger();
+            private final AtomicInteger skipped = new AtomicInteger();
 
             @Override
-            protected Void call() {
+            protected RepairReport call() throws Exception {
+
+                RepairReport report = null;
 
                 File parentDir = selectedFiles.get(0).getParentFile();
                 File corruptedDir = new File(parentDir, "corrupted");
                 if (!corruptedDir.exists()) corruptedDir.mkdirs();
 
-            /* =========================
-               1️⃣ PHASE CONVERSION
-               ========================= */
-                int totalConvert = selectedFiles.size();
-                int processed = 0;
+                // fichiers déjà convertis lors des lancements précédents
+                ConversionManifest manifest = ConversionManifest.load(parentDir);
 
                 updateMessage("Converting files…");
                 updateProgress(0, totalConvert);
 
-                for (File file : selectedFiles) {
-
-                    if (isCancelled()) return null;
-
-                    changeSingleFileExtension(
-                            file,
-                            normalizedExtension,
-                            corruptedDir
-                    );
-
-                    processed++;
-                    updateProgress(processed, totalConvert);
-                    updateMessage(
-                            "Converted " + processed + " / " + totalConvert
-                    );
+            /* =========================
+               2️⃣ PHASE RÉPARATION (concurrente)
+               ========================= */
+                RepairScheduler repairScheduler = new RepairScheduler(
+                        corruptedRepairService,
+                        result -> {
+                            repaired.incrementAndGet();
+                            reportProgress();
+                        });
+
+                Consumer<File> scheduleRepair = corrupted -> {
+                    toRepair.incrementAndGet();
+                    repairScheduler.submit(corrupted);
+                };
+
+                // fichiers déjà présents dans corrupted/ avant ce lancement
+                File[] previouslyCorrupted = corruptedDir.listFiles(File::isFile);
+                if (previouslyCorrupted != null) {
+                    for (File corrupted : previouslyCorrupted) {
+                        scheduleRepair.accept(corrupted);
+                    }
                 }
 
             /* =========================
-               2️⃣ PHASE RÉPARATION
+               1️⃣ PHASE CONVERSION (pipeline)
                ========================= */
-                File[] corruptedFiles = corruptedDir.listFiles();
-                if (corruptedFiles != null && corruptedFiles.length > 0) {
-
-                    int totalRepair = corruptedFiles.length;
-                    int repaired = 0;
-
-                    updateMessage("Repairing corrupted images…");
-                    updateProgress(0, totalRepair);
+                try {
+                    new ConversionPipeline(FileExtensionService.this, workerCount, manifest).run(
+                            selectedFiles,
+                            normalizedExtension,
+                            corruptedDir,
+                            new ConversionPipeline.Listener() {
+                                @Override
+                                public void fileProcessed(File file, boolean success) {
+                                    converted.incrementAndGet();
+                                    reportProgress();
+                                }
+
+                                @Override
+                                public void fileSkipped(File file) {
+                                    skipped.incrementAndGet();
+                                    fileProcessed(file, true);
+                                }
+
+                                @Override
+                                public void fileCorrupted(File corruptedFile) {
+                                    scheduleRepair.accept(corruptedFile);
+                                }
+                            },
+                            this::isCancelled
+                    );
 
-                    for (File corrupted : corruptedFiles) {
+                    report = repairScheduler.finish(this::isCancelled);
+                } finally {
+                    repairScheduler.cancel();
+                    saveManifest(manifest);
+                }
 
-                        if (isCancelled()) return null;
+                if (isCancelled()) return report;
 
-                        corruptedRepairService
-                                .repairFileWithFallbacks(corrupted, null);
+                updateMessage("All operations completed ✔");
+                updateProgress(1, 1);
+                return report;
+            }
 
-                        repaired++;
-                        updateProgress(repaired, totalRepair);
-                        updateMessage(
-                                "Repaired " + repaired + " / " + totalRepair
-                        );
-                    }
+            private void saveManifest(ConversionManifest manifest) {
+                try {
+                    manifest.save();
+                } catch (IOException e) {
+                    System.err.println("Manifest not saved: " + e.getMessage());
                 }
+            }
 
-                updateMessage("All operations completed ✔");
-                updateProgress(1, 1);
-                return null;
+            private void reportProgress() {
+                int done = converted.get() + repaired.get();
+                int total = totalConvert + toRepair.get();
+                updateProgress(done, total);
+                updateMessage("Converted " + converted.get() + " / " + totalConvert
+                        + (skipped.get() > 0 ? " (" + skipped.get() + " unchanged)" : "")
+                        + " — Repaired " + repaired.get() + " / " + toRepair.get());
             }
         };
 
@@ -466,10 +629,14 @@ public class FileExtensionService {
 
         task.setOnSucceeded(e -> {
             progressBar.setVisible(false);
+            RepairReport report = task.getValue();
+            boolean clean = report == null || report.getFailures().isEmpty();
             messageService.showMessage(
-                    Alert.AlertType.INFORMATION,
+                    clean ? Alert.AlertType.INFORMATION : Alert.AlertType.WARNING,
                     "Completed",
-                    "Conversion and repair finished successfully."
+                    "Conversion and repair finished"
+                            + (clean ? " successfully." : " with failures.")
+                            + (report != null && report.getTotal() > 0 ? "\n\n" + report.summary(20) : "")
             );
         });
 
@@ -517,6 +684,8 @@ public class FileExtensionService {
         );
         if (!confirmed) return containerDirectory;
 
+        names = new NameReservationService();
+
         // renameFilesRecursively(selectedDirectory, gatherInContainer, containerDirectory);
         File[] parentFolders = selectedDirectory.listFiles(File::isDirectory);
 
@@ -544,10 +713,10 @@ public class FileExtensionService {
                 try {
                     String baseName = directory.getName();
                     String ext = getFileExtension(file);
-                    Path target = gatherInContainer
-                            ? getAvailablePath(containerDirectory.toPath(), baseName + ext)
-                            : getAvailablePath(file.toPath().getParent(), baseName + ext);
-                    Files.move(file.toPath(), target);
+                    Path targetDir = gatherInContainer
+                            ? containerDirectory.toPath()
+                            : file.toPath().getParent();
+                    names.move(file.toPath(), targetDir, baseName + ext, NameReservationService.Style.SUFFIX);
                 } catch (IOException e) {
                     e.printStackTrace();
                 }
@@ -555,16 +724,9 @@ public class FileExtensionService {
         }
     }
 
-    public Path getAvailablePath(Path folder, String filename) {
-        Path target = folder.resolve(filename);
-        int count = 1;
-        String name = filename.contains(".") ? filename.substring(0, filename.lastIndexOf('.')) : filename;
-        String ext = filename.contains(".") ? filename.substring(filename.lastIndexOf('.')) : "";
-        while (Files.exists(target)) {
-            target = folder.resolve(name + "_" + count + ext);
-            count++;
-        }
-        return target;
+    /** Nom libre (réservé) pour {@code filename} dans {@code folder} */
+    public Path getAvailablePath(Path folder, String filename) throws IOException {
+        return names.reserve(folder, filename, NameReservationService.Style.SUFFIX);
     }
 
     /* =========================================================
@@ -0,0 +1,325 @@
+package com.rafaros.filemanagerutils.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Écriture des listes {@code filesList_N.txt}, N lignes par fichier.
+ * <p>
+ * Les lignes sont encodées en UTF-8 directement dans des tampons de 1 Mo
+ * recyclés (sans {@code String} intermédiaire ni encodeur), puis chaque
+ * fichier est écrit par un thread d'écriture avec une écriture groupée
+ * {@link FileChannel#write(ByteBuffer[])}. Plusieurs fichiers s'écrivent en
+ * parallèle pendant que l'appelant encode les suivants ; le nombre de tampons
+ * est borné, l'appelant attend quand le disque ne suit pas.
+ * <p>
+ * Réglages : {@code -Dfilemanager.fileList.linesPerFile} (12000),
+ * {@code -Dfilemanager.fileList.bom} (true),
+ * {@code -Dfilemanager.fileList.lineEnding} ({@code system} / {@code lf} / {@code crlf}),
+ * {@code -Dfilemanager.fileList.writers} (2).
+ * <p>
+ * Un seul fichier nommé peut aussi être écrit (export de liste), sans découpage.
+ */
+public class FileListWriter implements AutoCloseable {
+
+    public static final int LINES_PER_FILE =
+            Math.max(1, Integer.getInteger("filemanager.fileList.linesPerFile", 12_000));
+
+    private static final boolean DEFAULT_BOM =
+            Boolean.parseBoolean(System.getProperty("filemanager.fileList.bom", "true"));
+
+    private static final String DEFAULT_LINE_ENDING =
+            lineEnding(System.getProperty("filemanager.fileList.lineEnding", "system"));
+
+    private static final int WRITERS =
+            Math.max(1, Integer.getInteger("filemanager.fileList.writers", 2));
+
+    private static final int BUFFER_SIZE = 1024 * 1024;
+
+    /** tampons en circulation (encodage + écritures en attente) */
+    private static final int MAX_BUFFERS = 16;
+
+    private static final byte[] UTF8_BOM = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF};
+
+    private final Path outputDir;
+    // fichier unique (sinon filesList_N.txt dans outputDir)
+    private final Path singleFile;
+    private final int linesPerFile;
+    private final boolean bom;
+    private final byte[] separator;
+
+    private final ExecutorService writers;
+    private final BlockingQueue<ByteBuffer> free = new LinkedBlockingQueue<>();
+    private int allocated;
+
+    // fichier en cours d'encodage
+    private ByteBuffer current;
+    private List<ByteBuffer> segment = new ArrayList<>();
+    private CompletableFuture<Void> tail;
+    private boolean started;
+    private int linesInFile;
+
+    private final List<CompletableFuture<Void>> pending = new ArrayList<>();
+    private volatile IOException failure;
+
+    private int files;
+    private long lines;
+
+    public FileListWriter(Path outputDir, int linesPerFile) {
+        this(outputDir, linesPerFile, DEFAULT_BOM, DEFAULT_LINE_ENDING);
+    }
+
+    public FileListWriter(Path outputDir, int linesPerFile, boolean bom, String lineSeparator) {
+        this(outputDir, null, linesPerFile, bom, lineSeparator);
+    }
+
+    /** Toutes les lignes dans {@code file} */
+    public FileListWriter(Path file, boolean bom, String lineSeparator) {
+        this(file.getParent(), file, Integer.MAX_VALUE, bom, lineSeparator);
+    }
+
+    private FileListWriter(Path outputDir, Path singleFile, int linesPerFile, boolean bom, String lineSeparator) {
+        this.outputDir = outputDir;
+        this.singleFile = singleFile;
+        this.linesPerFile = Math.max(1, linesPerFile);
+        this.bom = bom;
+        this.separator = lineSeparator.getBytes(StandardCharsets.US_ASCII);
+        this.writers = Executors.newFixedThreadPool(WRITERS, r -> {
+            Thread t = new Thread(r, "file-list-writer");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /* =========================================================
+       ÉCRITURE
+       ========================================================= */
+
+    public void write(CharSequence line) throws IOException {
+
+        if (failure != null) throw failure;
+
+        if (!started) {
+            files++;
+            started = true;
+        }
+
+        // pire cas : 3 octets par char (une paire de substitution = 4 octets pour 2 chars)
+        int worst = line.length() * 3 + separator.length;
+        if (current == null || current.remaining() < worst) {
+            nextBuffer(worst);
+        }
+
+        encode(line, current);
+        current.put(separator);
+
+        lines++;
+        if (++linesInFile == linesPerFile) {
+            endFile();
+        }
+    }
+
+    /**
+     * Termine le fichier courant : la ligne suivante ouvre le fichier
+     * suivant. Un fichier sans ligne est tout de même créé (partitions vides).
+     */
+    public void nextFile() {
+        if (!started) {
+            files++;
+            started = true;
+        }
+        endFile();
+    }
+
+    public int filesWritten() {
+        return files;
+    }
+
+    public long linesWritten() {
+        return lines;
+    }
+
+    /**
+     * Termine le dernier fichier et attend la fin des écritures.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            if (started) {
+                endFile();
+            }
+            for (CompletableFuture<Void> future : pending) {
+                future.join();
+            }
+        } finally {
+            writers.shutdownNow();
+        }
+        if (failure != null) throw failure;
+    }
+
+    /* =========================================================
+       TAMPONS
+       ========================================================= */
+
+    private void nextBuffer(int needed) throws IOException {
+
+        if (current != null && current.position() > 0) {
+            segment.add(current);
+            // fichier très long : la première partie part sans attendre la fin
+            if (segment.size() >= MAX_BUFFERS / 2) {
+                submitSegment();
+            }
+        } else if (current != null) {
+            release(current);
+        }
+
+        current = needed > BUFFER_SIZE ? ByteBuffer.allocate(needed) : acquire();
+    }
+
+    private ByteBuffer acquire() throws IOException {
+        ByteBuffer buffer = free.poll();
+        if (buffer != null) return buffer;
+
+        if (allocated < MAX_BUFFERS) {
+            allocated++;
+            return ByteBuffer.allocate(BUFFER_SIZE);
+        }
+
+        try {
+            return free.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted", e);
+        }
+    }
+
+    private void release(ByteBuffer buffer) {
+        if (buffer.capacity() == BUFFER_SIZE) {
+            buffer.clear();
+            free.offer(buffer);
+        }
+    }
+
+    /* =========================================================
+       FICHIERS
+       ========================================================= */
+
+    private void endFile() {
+        if (current != null && current.position() > 0) {
+            segment.add(current);
+            current = null;
+        }
+        submitSegment();
+        pending.add(tail);
+        tail = null;
+        started = false;
+        linesInFile = 0;
+    }
+
+    /** les parties d'un même fichier s'écrivent dans l'ordre, les fichiers en parallèle */
+    private void submitSegment() {
+
+        List<ByteBuffer> buffers = segment;
+        segment = new ArrayList<>();
+
+        Path file = singleFile != null ? singleFile : outputDir.resolve(String.format("filesList_%d.txt", files));
+        boolean first = tail == null;
+        CompletableFuture<Void> previous = first ? CompletableFuture.completedFuture(null) : tail;
+
+        tail = previous.thenRunAsync(() -> writeSegment(file, buffers, first), writers);
+    }
+
+    private void writeSegment(Path file, List<ByteBuffer> buffers, boolean first) {
+
+        try {
+            if (failure != null) return;
+
+            List<ByteBuffer> gather = new ArrayList<>(buffers.size() + 1);
+            if (first && bom) {
+                gather.add(ByteBuffer.wrap(UTF8_BOM));
+            }
+            for (ByteBuffer buffer : buffers) {
+                buffer.flip();
+                gather.add(buffer);
+            }
+            ByteBuffer[] array = gather.toArray(new ByteBuffer[0]);
+
+            StandardOpenOption mode = first ? StandardOpenOption.TRUNCATE_EXISTING : StandardOpenOption.APPEND;
+            try (FileChannel channel = FileChannel.open(file,
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, mode)) {
+                while (array.length > 0 && array[array.length - 1].hasRemaining()) {
+                    channel.write(array);
+                }
+            }
+
+        } catch (IOException e) {
+            if (failure == null) failure = e;
+            System.err.println("File list write failed: " + file + " (" + e.getMessage() + ")");
+
+        } finally {
+            for (ByteBuffer buffer : buffers) {
+                release(buffer);
+            }
+        }
+    }
+
+    /* =========================================================
+       ENCODAGE
+       ========================================================= */
+
+    /** UTF-8 ; un demi-caractère de substitution isolé devient '?' */
+    private static void encode(CharSequence s, ByteBuffer out) {
+
+        byte[] a = out.array();
+        int p = out.arrayOffset() + out.position();
+        int length = s.length();
+
+        for (int i = 0; i < length; i++) {
+            char c = s.charAt(i);
+
+            if (c < 0x80) {
+                a[p++] = (byte) c;
+            } else if (c < 0x800) {
+                a[p++] = (byte) (0xC0 | (c >> 6));
+                a[p++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length
+                    && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                a[p++] = (byte) (0xF0 | (cp >> 18));
+                a[p++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                a[p++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                a[p++] = (byte) (0x80 | (cp & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                a[p++] = (byte) '?';
+            } else {
+                a[p++] = (byte) (0xE0 | (c >> 12));
+                a[p++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                a[p++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+
+        out.position(p - out.arrayOffset());
+    }
+
+    private static String lineEnding(String policy) {
+        switch (policy.trim().toLowerCase()) {
+            case "lf":
+                return "\n";
+            case "crlf":
+                return "\r\n";
+            default:
+                return System.lineSeparator();
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.rafaros.filemanagerutils.service;
+
+/**
+ * Formats d'image reconnus par {@link ImageFormatSniffer}.
+ */
+public enum ImageFormat {
+
+    PNG(".png"),
+    JPEG(".jpg"),
+    HEIC(".heic"),
+    GIF(".gif"),
+    BMP(".bmp"),
+    WEBP(".webp"),
+    UNKNOWN("");
+
+    private final String extension;
+
+    ImageFormat(String extension) {
+        this.extension = extension;
+    }
+
+    /** Extension canonique, point compris (vide pour UNKNOWN) */
+    public String extension() {
+        return extension;
+    }
+
+    /** Formats que ImageIO sait décoder sans plugin */
+    public boolean isImageIoReadable() {
+        return this == PNG || this == JPEG || this == GIF || this == BMP;
+    }
+}
@@ -0,0 +1,167 @@
+package com.rafaros.filemanagerutils.service;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Détection du format réel d'une image par ses premiers octets (magic bytes).
+ * <p>
+ * Le résultat est mis en cache par chemin et validé par (mtime, taille) :
+ * un fichier inchangé n'est ouvert qu'une seule fois, quel que soit le
+ * nombre d'étapes (conversion, réparation…) qui le consultent.
+ */
+public class ImageFormatSniffer {
+
+    /** taille de l'en-tête lu : couvre la box ftyp HEIF et ses premières marques */
+    private static final int HEADER_SIZE = 32;
+
+    /** au-delà, le cache est vidé plutôt que de grossir sans fin */
+    private static final int MAX_CACHE_ENTRIES = 1_000_000;
+
+    private static final ImageFormatSniffer SHARED = new ImageFormatSniffer();
+
+    private static final ThreadLocal<byte[]> HEADER =
+            ThreadLocal.withInitial(() -> new byte[HEADER_SIZE]);
+
+    private static final class Entry {
+        final long lastModified;
+        final long size;
+        final ImageFormat format;
+
+        Entry(long lastModified, long size, ImageFormat format) {
+            this.lastModified = lastModified;
+            this.size = size;
+            this.format = format;
+        }
+    }
+
+    private final Map<Path, Entry> cache = new ConcurrentHashMap<>();
+
+    public static ImageFormatSniffer shared() {
+        return SHARED;
+    }
+
+    public ImageFormat sniff(File file) {
+        return sniff(file.toPath());
+    }
+
+    public ImageFormat sniff(Path path) {
+
+        BasicFileAttributes attrs;
+        try {
+            attrs = Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (IOException e) {
+            return ImageFormat.UNKNOWN;
+        }
+        if (!attrs.isRegularFile()) {
+            return ImageFormat.UNKNOWN;
+        }
+
+        long lastModified = attrs.lastModifiedTime().toMillis();
+        long size = attrs.size();
+
+        Entry cached = cache.get(path);
+        if (cached != null && cached.lastModified == lastModified && cached.size == size) {
+            return cached.format;
+        }
+
+        ImageFormat format = readFormat(path);
+
+        if (cache.size() >= MAX_CACHE_ENTRIES) {
+            cache.clear();
+        }
+        cache.put(path, new Entry(lastModified, size, format));
+
+        return format;
+    }
+
+    private static ImageFormat readFormat(Path path) {
+
+        byte[] header = HEADER.get();
+
+        try (FileInputStream in = new FileInputStream(path.toFile())) {
+
+            int length = 0;
+            while (length < HEADER_SIZE) {
+                int n = in.read(header, length, HEADER_SIZE - length);
+                if (n < 0) break;
+                length += n;
+            }
+
+            return detect(header, length);
+
+        } catch (IOException e) {
+            return ImageFormat.UNKNOWN;
+        }
+    }
+
+    /* =========================================================
+       SIGNATURES
+       ========================================================= */
+
+    /**
+     * Identifie le format à partir des {@code length} premiers octets de {@code h}.
+     */
+    public static ImageFormat detect(byte[] h, int length) {
+
+        if (length >= 8
+                && (h[0] & 0xFF) == 0x89 && h[1] == 'P' && h[2] == 'N' && h[3] == 'G'
+                && h[4] == 0x0D && h[5] == 0x0A && h[6] == 0x1A && h[7] == 0x0A) {
+            return ImageFormat.PNG;
+        }
+
+        if (length >= 3
+                && (h[0] & 0xFF) == 0xFF && (h[1] & 0xFF) == 0xD8 && (h[2] & 0xFF) == 0xFF) {
+            return ImageFormat.JPEG;
+        }
+
+        if (length >= 6
+                && h[0] == 'G' && h[1] == 'I' && h[2] == 'F' && h[3] == '8'
+                && (h[4] == '7' || h[4] == '9') && h[5] == 'a') {
+            return ImageFormat.GIF;
+        }
+
+        if (length >= 12
+                && h[0] == 'R' && h[1] == 'I' && h[2] == 'F' && h[3] == 'F'
+                && h[8] == 'W' && h[9] == 'E' && h[10] == 'B' && h[11] == 'P') {
+            return ImageFormat.WEBP;
+        }
+
+        if (length >= 12 && h[4] == 'f' && h[5] == 't' && h[6] == 'y' && h[7] == 'p') {
+            // marque majeure puis marques compatibles (après minor_version)
+            if (isHeifBrand(h, 8)) {
+                return ImageFormat.HEIC;
+            }
+            for (int i = 16; i + 4 <= length; i += 4) {
+                if (isHeifBrand(h, i)) {
+                    return ImageFormat.HEIC;
+                }
+            }
+        }
+
+        if (length >= 14 && h[0] == 'B' && h[1] == 'M') {
+            return ImageFormat.BMP;
+        }
+
+        return ImageFormat.UNKNOWN;
+    }
+
+    private static boolean isHeifBrand(byte[] h, int i) {
+        byte a = h[i], b = h[i + 1], c = h[i + 2], d = h[i + 3];
+
+        if (a == 'h' && b == 'e') {
+            // heic, heix, heim, heis, hevc, hevx, hevm, hevs
+            return (c == 'i' && (d == 'c' || d == 'x' || d == 'm' || d == 's'))
+                    || (c == 'v' && (d == 'c' || d == 'x' || d == 'm' || d == 's'));
+        }
+
+        // mif1, msf1
+        return (a == 'm' && (b == 'i' || b == 's') && c == 'f' && d == '1');
+    }
+}
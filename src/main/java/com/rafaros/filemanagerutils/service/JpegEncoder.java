@@ -0,0 +1,141 @@
+package com.rafaros.filemanagerutils.service;
+
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOInvalidTreeException;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.image.RenderedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Iterator;
+
+/**
+ * Encodeur JPEG dans la JVM reproduisant le profil ImageMagick
+ * {@code -quality 82 -sampling-factor 4:2:0 -interlace Plane -strip}.
+ * <p>
+ * Le {@link ImageWriter} est créé une fois par thread et réutilisé ;
+ * les métadonnées (JFIF seul, sans EXIF) sont mises en cache par type d'image.
+ */
+public final class JpegEncoder {
+
+    /** même table de quantification que {@code magick -quality 82} */
+    public static final float QUALITY = 0.82f;
+
+    private static final String JPEG_METADATA_FORMAT = "javax_imageio_jpeg_image_1.0";
+
+    private static final ThreadLocal<JpegEncoder> CURRENT = ThreadLocal.withInitial(JpegEncoder::new);
+
+    private final ImageWriter writer;
+
+    private ImageTypeSpecifier cachedType;
+    private boolean cachedProgressive;
+    private IIOMetadata cachedMetadata;
+
+    private JpegEncoder() {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("jpeg");
+        if (!writers.hasNext()) {
+            throw new IllegalStateException("No JPEG ImageWriter available");
+        }
+        this.writer = writers.next();
+    }
+
+    /**
+     * Écrit {@code image} (RGB ou niveaux de gris) avec le profil ImageMagick.
+     *
+     * @param progressive {@code -interlace Plane} ; à désactiver pour l'encodage
+     *                    par bandes, le mode progressif gardant toute l'image en mémoire
+     */
+    public static void write(RenderedImage image, File output, boolean progressive) throws IOException {
+        CURRENT.get().encode(image, output, progressive);
+    }
+
+    private void encode(RenderedImage image, File output, boolean progressive) throws IOException {
+
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setCompressionQuality(QUALITY);
+        param.setProgressiveMode(progressive
+                ? ImageWriteParam.MODE_DEFAULT
+                : ImageWriteParam.MODE_DISABLED);
+
+        IIOMetadata metadata = metadataFor(ImageTypeSpecifier.createFromRenderedImage(image), param, progressive);
+
+        // un flux RandomAccessFile ne tronque pas un fichier existant plus long
+        Files.deleteIfExists(output.toPath());
+
+        try (ImageOutputStream ios = ImageIO.createImageOutputStream(output)) {
+
+            if (ios == null) {
+                throw new IOException("Cannot open " + output);
+            }
+
+            writer.setOutput(ios);
+            writer.write(null, new IIOImage(image, null, metadata), param);
+
+        } finally {
+            writer.reset();
+        }
+    }
+
+    /**
+     * Métadonnées par défaut (JFIF, sans EXIF = {@code -strip}) avec
+     * sous-échantillonnage chroma 2x2 explicite (4:2:0).
+     */
+    private IIOMetadata metadataFor(ImageTypeSpecifier type, ImageWriteParam param, boolean progressive)
+            throws IIOInvalidTreeException {
+
+        if (cachedMetadata != null
+                && cachedProgressive == progressive
+                && sameType(cachedType, type)) {
+            return cachedMetadata;
+        }
+
+        IIOMetadata metadata = writer.getDefaultImageMetadata(type, param);
+        Node root = metadata.getAsTree(JPEG_METADATA_FORMAT);
+
+        Node sof = find(root, "sof");
+        if (sof != null) {
+            for (Node c = sof.getFirstChild(); c != null; c = c.getNextSibling()) {
+                if (!"componentSpec".equals(c.getNodeName())) continue;
+
+                NamedNodeMap attrs = c.getAttributes();
+                boolean luma = "1".equals(attrs.getNamedItem("componentId").getNodeValue());
+                String factor = luma ? "2" : "1";
+                attrs.getNamedItem("HsamplingFactor").setNodeValue(factor);
+                attrs.getNamedItem("VsamplingFactor").setNodeValue(factor);
+            }
+        }
+
+        metadata.setFromTree(JPEG_METADATA_FORMAT, root);
+
+        cachedType = type;
+        cachedProgressive = progressive;
+        cachedMetadata = metadata;
+
+        return metadata;
+    }
+
+    private static boolean sameType(ImageTypeSpecifier a, ImageTypeSpecifier b) {
+        return a != null
+                && a.getColorModel().equals(b.getColorModel())
+                && a.getSampleModel().getNumBands() == b.getSampleModel().getNumBands()
+                && a.getSampleModel().getDataType() == b.getSampleModel().getDataType();
+    }
+
+    private static Node find(Node node, String name) {
+        if (name.equals(node.getNodeName())) return node;
+        for (Node c = node.getFirstChild(); c != null; c = c.getNextSibling()) {
+            Node found = find(c, name);
+            if (found != null) return found;
+        }
+        return null;
+    }
+}
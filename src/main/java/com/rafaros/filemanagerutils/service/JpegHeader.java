@@ -0,0 +1,164 @@
+package com.rafaros.filemanagerutils.service;
+
+/**
+ * Lecture des segments JPEG situés avant les données compressées, pour décider
+ * si un réencodage dans la JVM donne le même résultat qu'ImageMagick.
+ * <p>
+ * ImageMagick applique {@code -auto-orient} et {@code -colorspace sRGB} ;
+ * le décodeur ImageIO ne fait ni l'un ni l'autre et ne lit pas le CMYK.
+ * Ces fichiers restent donc sur la route externe.
+ */
+final class JpegHeader {
+
+    private JpegHeader() {
+    }
+
+    /**
+     * Vrai si le JPEG est en niveaux de gris ou YCbCr, huffman séquentiel ou
+     * progressif, sans rotation EXIF ni profil ICC embarqué.
+     */
+    static boolean canReencodeInJvm(byte[] data) {
+
+        if (data == null || data.length < 4
+                || (data[0] & 0xFF) != 0xFF || (data[1] & 0xFF) != 0xD8) {
+            return false;
+        }
+
+        int i = 2;
+
+        while (i + 4 <= data.length) {
+
+            if ((data[i] & 0xFF) != 0xFF) {
+                return false;
+            }
+
+            int marker = data[i + 1] & 0xFF;
+
+            // octets de remplissage et marqueurs sans longueur
+            if (marker == 0xFF) {
+                i++;
+                continue;
+            }
+            if (marker == 0x01 || (marker >= 0xD0 && marker <= 0xD8)) {
+                i += 2;
+                continue;
+            }
+
+            int length = u16(data, i + 2);
+            int segment = i + 4;
+            int end = i + 2 + length;
+
+            if (length < 2 || end > data.length) {
+                return false;
+            }
+
+            switch (marker) {
+
+                case 0xE1: // APP1 : EXIF
+                    if (startsWith(data, segment, end, "Exif\0\0")
+                            && orientation(data, segment + 6, end) > 1) {
+                        return false;
+                    }
+                    break;
+
+                case 0xE2: // APP2 : profil ICC (Display P3, Adobe RGB…)
+                    if (startsWith(data, segment, end, "ICC_PROFILE\0")) {
+                        return false;
+                    }
+                    break;
+
+                case 0xC0: // baseline
+                case 0xC1: // séquentiel étendu
+                case 0xC2: // progressif
+                    if (segment + 6 > end) {
+                        return false;
+                    }
+                    int components = data[segment + 5] & 0xFF;
+                    if (components != 1 && components != 3) {
+                        return false;
+                    }
+                    break;
+
+                case 0xDA: // début des données : tout l'en-tête est lu
+                    return true;
+
+                default:
+                    // sans perte ou arithmétique : non décodable par ImageIO
+                    if (marker >= 0xC3 && marker <= 0xCF
+                            && marker != 0xC4 && marker != 0xC8 && marker != 0xCC) {
+                        return false;
+                    }
+                    break;
+            }
+
+            i = end;
+        }
+
+        return false;
+    }
+
+    /**
+     * Valeur du tag Orientation (0x0112) de l'IFD0 ; 0 si absent.
+     */
+    private static int orientation(byte[] data, int tiff, int end) {
+
+        if (tiff + 8 > end) {
+            return 0;
+        }
+
+        boolean littleEndian = data[tiff] == 'I' && data[tiff + 1] == 'I';
+        boolean bigEndian = data[tiff] == 'M' && data[tiff + 1] == 'M';
+        if (!littleEndian && !bigEndian) {
+            return 0;
+        }
+
+        long ifd = tiff + read32(data, tiff + 4, littleEndian);
+        if (ifd + 2 > end) {
+            return 0;
+        }
+
+        int entries = read16(data, (int) ifd, littleEndian);
+
+        for (int e = 0; e < entries; e++) {
+            int entry = (int) ifd + 2 + e * 12;
+            if (entry + 12 > end) {
+                return 0;
+            }
+            if (read16(data, entry, littleEndian) == 0x0112) {
+                return read16(data, entry + 8, littleEndian);
+            }
+        }
+
+        return 0;
+    }
+
+    private static boolean startsWith(byte[] data, int offset, int end, String prefix) {
+        if (offset + prefix.length() > end) {
+            return false;
+        }
+        for (int k = 0; k < prefix.length(); k++) {
+            if (data[offset + k] != (byte) prefix.charAt(k)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int u16(byte[] data, int offset) {
+        return ((data[offset] & 0xFF) << 8) | (data[offset + 1] & 0xFF);
+    }
+
+    private static int read16(byte[] data, int offset, boolean littleEndian) {
+        return littleEndian
+                ? (data[offset] & 0xFF) | ((data[offset + 1] & 0xFF) << 8)
+                : u16(data, offset);
+    }
+
+    private static long read32(byte[] data, int offset, boolean littleEndian) {
+        return littleEndian
+                ? (data[offset] & 0xFF) | ((data[offset + 1] & 0xFF) << 8)
+                | ((data[offset + 2] & 0xFF) << 16) | ((long) (data[offset + 3] & 0xFF) << 24)
+                : ((long) (data[offset] & 0xFF) << 24) | ((data[offset + 1] & 0xFF) << 16)
+                | ((data[offset + 2] & 0xFF) << 8) | (data[offset + 3] & 0xFF);
+    }
+}
@@ -0,0 +1,294 @@
+package com.rafaros.filemanagerutils.service;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Exécution ImageMagick mutualisée.
+ * <p>
+ * Quelques workers permanents vident une file de travaux et regroupent
+ * tous les travaux en attente dans un seul appel {@code magick}
+ * ({@code ( in ops -write out +delete ) ...}) : le coût de démarrage du
+ * processus est payé une fois par lot et non une fois par image.
+ * Le succès est vérifié fichier par fichier ; si un lot échoue, les
+ * fichiers sans sortie sont rejoués individuellement.
+ */
+public class MagickWorkerPool {
+
+    /** Profils d'arguments partagés par la conversion et la réparation */
+    public enum Profile {
+
+        /** Conversion JPEG « web » (HEIC/JPEG → JPG) */
+        JPEG_WEB(
+                new String[]{},
+                new String[]{
+                        "-auto-orient",
+                        "-colorspace", "sRGB",
+                        "-depth", "8",
+                        "-type", "TrueColor",
+                        "-alpha", "remove",
+                        "-strip",
+                        "-sampling-factor", "4:2:0",
+                        "-interlace", "Plane",
+                        "-quality", "82"
+                }),
+
+        /** Réparation : ignore les CRC PNG et aplatit la transparence sur blanc */
+        REPAIR_FLATTEN(
+                new String[]{"-define", "png:ignore-crc=TRUE"},
+                new String[]{
+                        "-background", "white",
+                        "-alpha", "remove"
+                });
+
+        /** réglages à placer avant la lecture de l'image */
+        final String[] readSettings;
+        /** opérations appliquées avant l'écriture */
+        final String[] operations;
+
+        Profile(String[] readSettings, String[] operations) {
+            this.readSettings = readSettings;
+            this.operations = operations;
+        }
+    }
+
+    private static final class Job {
+        final Profile profile;
+        final File input;
+        final File output;
+        final CompletableFuture<Boolean> result = new CompletableFuture<>();
+
+        Job(Profile profile, File input, File output) {
+            this.profile = profile;
+            this.input = input;
+            this.output = output;
+        }
+    }
+
+    private static final int DEFAULT_WORKERS = Integer.getInteger(
+            "filemanager.magick.workers",
+            Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2)));
+
+    /** fichiers max par appel */
+    private static final int MAX_BATCH = 64;
+
+    /** longueur max de la ligne de commande (limite Windows : 32 767) */
+    private static final int MAX_COMMAND_CHARS = 24_000;
+
+    private static final MagickWorkerPool SHARED = new MagickWorkerPool(DEFAULT_WORKERS);
+
+    private final BlockingQueue<Job> queue = new LinkedBlockingQueue<>();
+
+    public static MagickWorkerPool shared() {
+        return SHARED;
+    }
+
+    public MagickWorkerPool(int workers) {
+        for (int i = 1; i <= Math.max(1, workers); i++) {
+            Thread t = new Thread(this::workerLoop, "magick-worker-" + i);
+            t.setDaemon(true);
+            t.start();
+        }
+    }
+
+    /* =========================================================
+       API
+       ========================================================= */
+
+    public CompletableFuture<Boolean> submit(Profile profile, File input, File output) {
+        Job job = new Job(profile, input, output);
+        queue.add(job);
+        return job.result;
+    }
+
+    /**
+     * Conversion bloquante ; les appels concurrents sont regroupés en lots.
+     */
+    public boolean convert(Profile profile, File input, File output) {
+        try {
+            return submit(profile, input, output).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException e) {
+            return false;
+        }
+    }
+
+    /* =========================================================
+       WORKERS
+       ========================================================= */
+
+    private void workerLoop() {
+        List<Job> batch = new ArrayList<>(MAX_BATCH);
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                batch.clear();
+                batch.add(queue.take());
+                queue.drainTo(batch, MAX_BATCH - 1);
+
+                runBatch(batch);
+
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                // ne jamais laisser mourir un worker
+                for (Job job : batch) job.result.complete(false);
+            }
+        }
+    }
+
+    private void runBatch(List<Job> batch) {
+
+        // découpe selon la longueur de ligne de commande
+        List<Job> chunk = new ArrayList<>();
+        int chars = 0;
+
+        for (Job job : batch) {
+            int jobChars = job.input.getAbsolutePath().length()
+                    + job.output.getAbsolutePath().length() + 200;
+
+            if (!chunk.isEmpty() && chars + jobChars > MAX_COMMAND_CHARS) {
+                runChunk(chunk);
+                chunk = new ArrayList<>();
+                chars = 0;
+            }
+            chunk.add(job);
+            chars += jobChars;
+        }
+
+        if (!chunk.isEmpty()) {
+            runChunk(chunk);
+        }
+    }
+
+    private void runChunk(List<Job> chunk) {
+
+        // réécriture sur place : la sortie ne peut pas être supprimée
+        // avant la lecture, ni servir de preuve de succès dans un lot
+        List<Job> batched = new ArrayList<>(chunk.size());
+        for (Job job : chunk) {
+            if (isInPlace(job)) {
+                job.result.complete(runSingle(job));
+            } else {
+                batched.add(job);
+            }
+        }
+        chunk = batched;
+
+        if (chunk.isEmpty()) {
+            return;
+        }
+
+        if (chunk.size() == 1) {
+            Job job = chunk.get(0);
+            job.result.complete(runSingle(job));
+            return;
+        }
+
+        for (Job job : chunk) {
+            deleteQuietly(job.output);
+        }
+
+        List<String> command = new ArrayList<>();
+        command.add("magick");
+        command.add("-respect-parentheses");
+
+        for (int i = 0; i < chunk.size(); i++) {
+            Job job = chunk.get(i);
+            command.add("(");
+            Collections.addAll(command, job.profile.readSettings);
+            command.add(job.input.getAbsolutePath());
+            Collections.addAll(command, job.profile.operations);
+            command.add("-write");
+            command.add(job.output.getAbsolutePath());
+            if (i < chunk.size() - 1) {
+                command.add("+delete");
+            }
+            command.add(")");
+        }
+        command.add("null:");
+
+        int exit = execute(command);
+
+        for (Job job : chunk) {
+            if (hasOutput(job.output)) {
+                job.result.complete(true);
+            } else if (exit == 0) {
+                job.result.complete(false);
+            } else {
+                // lot interrompu par un fichier défectueux : rejoue seul
+                job.result.complete(runSingle(job));
+            }
+        }
+    }
+
+    private boolean runSingle(Job job) {
+
+        List<String> command = new ArrayList<>();
+        command.add("magick");
+        Collections.addAll(command, job.profile.readSettings);
+        command.add(job.input.getAbsolutePath());
+        Collections.addAll(command, job.profile.operations);
+        command.add(job.output.getAbsolutePath());
+
+        return execute(command) == 0 && hasOutput(job.output);
+    }
+
+    private int execute(List<String> command) {
+        try {
+            ProcessBuilder pb = new ProcessBuilder(command);
+            pb.redirectErrorStream(true);
+
+            Process process = pb.start();
+
+            String lastLine = null;
+            try (BufferedReader reader =
+                         new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    lastLine = line;
+                }
+            }
+
+            int exit = process.waitFor();
+            if (exit != 0 && lastLine != null) {
+                System.err.println("[magick] " + lastLine);
+            }
+            return exit;
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return -1;
+        } catch (IOException e) {
+            System.err.println("[magick] " + e.getMessage());
+            return -1;
+        }
+    }
+
+    private static boolean isInPlace(Job job) {
+        return job.input.getAbsoluteFile().toPath().normalize()
+                .equals(job.output.getAbsoluteFile().toPath().normalize());
+    }
+
+    private static boolean hasOutput(File output) {
+        return output.isFile() && output.length() > 0;
+    }
+
+    private static void deleteQuietly(File file) {
+        try {
+            Files.deleteIfExists(file.toPath());
+        } catch (IOException ignored) {
+        }
+    }
+}
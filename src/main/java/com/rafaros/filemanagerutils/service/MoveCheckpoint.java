@@ -0,0 +1,158 @@
+package com.rafaros.filemanagerutils.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * Point de reprise d'un déplacement à partir d'une liste
+ * ({@code desktop_2.txt}).
+ * <p>
+ * Retient la position dans la liste ({@link PathList.Cursor#position()})
+ * avant laquelle toutes les entrées ont été traitées, avec le nombre
+ * d'entrées traitées et déplacées. Un lancement interrompu reprend là ; les
+ * entrées déjà déplacées au-delà de ce point sont retrouvées absentes et
+ * ignorées. Le point n'est valable que pour la même liste (taille, mtime) et
+ * la même destination.
+ * <p>
+ * Stockage : {@code ~/.filemanagerutils/checkpoints/<empreinte>.ckpt},
+ * écrit dans un temporaire synchronisé sur disque puis renommé.
+ */
+public class MoveCheckpoint {
+
+    private static final int MAGIC = 0x464D434B; // "FMCK"
+    private static final int VERSION = 1;
+
+    /** magic, version, taille liste, mtime liste, position, traitées, déplacées */
+    private static final int BYTES = 4 + 4 + 8 + 8 + 8 + 8 + 8;
+
+    private final Path storage;
+    private final long listSize;
+    private final long listMtime;
+
+    private long position;
+    private long completed;
+    private long moved;
+
+    private MoveCheckpoint(Path storage, long listSize, long listMtime) {
+        this.storage = storage;
+        this.listSize = listSize;
+        this.listMtime = listMtime;
+    }
+
+    /* =========================================================
+       CHARGEMENT / SAUVEGARDE
+       ========================================================= */
+
+    /**
+     * Point de reprise de {@code list} vers {@code destinationRoot}
+     * (début de liste s'il n'y en a pas ou si la liste a changé).
+     */
+    public static MoveCheckpoint load(Path list, Path destinationRoot) throws IOException {
+        Path dir = Path.of(System.getProperty("user.home"), ".filemanagerutils", "checkpoints");
+        String key = list.toAbsolutePath().normalize() + "|" + destinationRoot.toAbsolutePath().normalize();
+        return loadFrom(dir.resolve(Long.toHexString(ConversionManifest.hashString(key)) + ".ckpt"), list);
+    }
+
+    static MoveCheckpoint loadFrom(Path storage, Path list) throws IOException {
+
+        BasicFileAttributes attrs = Files.readAttributes(list, BasicFileAttributes.class);
+        MoveCheckpoint checkpoint = new MoveCheckpoint(storage, attrs.size(), attrs.lastModifiedTime().toMillis());
+
+        if (!Files.isRegularFile(storage)) {
+            return checkpoint;
+        }
+
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(storage));
+            if (buffer.remaining() != BYTES || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                throw new IOException("Unknown checkpoint format");
+            }
+            if (buffer.getLong() != checkpoint.listSize || buffer.getLong() != checkpoint.listMtime) {
+                // autre liste sous le même nom : on repart du début
+                checkpoint.clear();
+                return checkpoint;
+            }
+            checkpoint.position = buffer.getLong();
+            checkpoint.completed = buffer.getLong();
+            checkpoint.moved = buffer.getLong();
+
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Checkpoint ignored (" + storage.getFileName() + "): " + e.getMessage());
+        }
+        return checkpoint;
+    }
+
+    /**
+     * Enregistre le point de reprise ; un arrêt brutal laisse le précédent
+     * intact.
+     */
+    public synchronized void save(long position, long completed, long moved) throws IOException {
+
+        this.position = position;
+        this.completed = completed;
+        this.moved = moved;
+
+        Files.createDirectories(storage.getParent());
+        Path tmp = storage.resolveSibling(storage.getFileName() + ".tmp");
+
+        ByteBuffer buffer = ByteBuffer.allocate(BYTES);
+        buffer.putInt(MAGIC).putInt(VERSION)
+                .putLong(listSize).putLong(listMtime)
+                .putLong(position).putLong(completed).putLong(moved)
+                .flip();
+
+        try (FileChannel channel = FileChannel.open(tmp,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        }
+
+        try {
+            Files.move(tmp, storage, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp, storage, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /** Liste terminée : le prochain lancement repart du début */
+    public synchronized void clear() {
+        position = completed = moved = 0;
+        try {
+            Files.deleteIfExists(storage);
+        } catch (IOException e) {
+            System.err.println("Checkpoint not deleted: " + storage + " (" + e.getMessage() + ")");
+        }
+    }
+
+    /* =========================================================
+       ÉTAT
+       ========================================================= */
+
+    public synchronized long getPosition() {
+        return position;
+    }
+
+    public synchronized long getCompleted() {
+        return completed;
+    }
+
+    public synchronized long getMoved() {
+        return moved;
+    }
+
+    /** true si un lancement précédent s'est arrêté en cours de liste */
+    public synchronized boolean isResumed() {
+        return position > 0;
+    }
+}
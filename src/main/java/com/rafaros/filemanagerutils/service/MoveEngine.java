@@ -0,0 +1,306 @@
+package com.rafaros.filemanagerutils.service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Déplacements en masse au fil de la lecture d'une liste
+ * ({@code desktop_2.txt}), sans la charger.
+ * <p>
+ * Chaque dossier cible est créé une fois et son contenu lu une fois
+ * ({@link NameReservationService}) : un doublon reçoit le suffixe
+ * {@code _1}, {@code _2}… sans sonder le disque nom par nom. Les entrées
+ * partent par lots de {@value #BATCH} lignes sur un pool borné
+ * ({@code -Dfilemanager.move.threads}, 8 par défaut) pendant que la lecture
+ * continue ; le nombre de lots en vol est borné. L'avancement est remonté au
+ * plus toutes les {@value #PROGRESS_MILLIS} ms, depuis le thread appelant,
+ * et un {@link MoveCheckpoint} est enregistré au plus toutes les
+ * {@value #CHECKPOINT_MILLIS} ms.
+ */
+public class MoveEngine {
+
+    /** Avancement d'un déplacement depuis une liste : part de la liste traitée (0 à 1) */
+    public interface StreamProgress {
+        void update(long done, long moved, double fraction);
+    }
+
+    /** Dossier cible d'une entrée de liste ; null pour l'ignorer */
+    public interface Target {
+        Path targetDir(Path source);
+    }
+
+    /** Bilan d'une série de déplacements */
+    public static final class Result {
+
+        private final long moved;
+        private final long skipped;
+        private final long failed;
+
+        Result(long moved, long skipped, long failed) {
+            this.moved = moved;
+            this.skipped = skipped;
+            this.failed = failed;
+        }
+
+        public long getMoved() {
+            return moved;
+        }
+
+        /** source disparue avant son déplacement */
+        public long getSkipped() {
+            return skipped;
+        }
+
+        public long getFailed() {
+            return failed;
+        }
+    }
+
+    private static final int DEFAULT_THREADS = Integer.getInteger("filemanager.move.threads", 8);
+
+    static final int BATCH = 256;
+    static final long PROGRESS_MILLIS = 100;
+    static final long CHECKPOINT_MILLIS = 1000;
+
+    /** lots en attente ou en cours, par thread */
+    private static final int IN_FLIGHT_PER_THREAD = 4;
+
+    private final int threads;
+
+    public MoveEngine() {
+        this(DEFAULT_THREADS);
+    }
+
+    public MoveEngine(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+    /* =========================================================
+       DÉPLACEMENT AU FIL D'UNE LISTE
+       ========================================================= */
+
+    /** Lot d'entrées consécutives de la liste */
+    private static final class Chunk {
+        final long sequence;
+        final List<Path> sources = new ArrayList<>(BATCH);
+        final List<Path> targets = new ArrayList<>(BATCH);
+        int lines;
+        long end;
+        long moved;
+
+        Chunk(long sequence) {
+            this.sequence = sequence;
+        }
+    }
+
+    /**
+     * Déplace les entrées de {@code cursor} à partir du point de reprise,
+     * chacune dans {@code target.targetDir(source)} ; bloque jusqu'à la fin.
+     * Le point de reprise est effacé quand la liste est terminée, enregistré
+     * sinon (interruption, erreur de lecture).
+     */
+    public Result stream(PathList.Cursor cursor, Target target, MoveCheckpoint checkpoint,
+                         StreamProgress progress) throws IOException, InterruptedException {
+
+        AtomicLong done = new AtomicLong(checkpoint.getCompleted());
+        AtomicLong moved = new AtomicLong(checkpoint.getMoved());
+        AtomicLong skipped = new AtomicLong();
+        AtomicLong failed = new AtomicLong();
+
+        // lots terminés, validés dans l'ordre de la liste
+        Map<Long, Chunk> finished = new HashMap<>();
+        long[] committed = {checkpoint.getPosition(), checkpoint.getCompleted(), checkpoint.getMoved()};
+        long[] nextSequence = {0};
+
+        NameReservationService names = new NameReservationService();
+        int permits = threads * IN_FLIGHT_PER_THREAD;
+        Semaphore inFlight = new Semaphore(permits);
+        ExecutorService pool = newPool();
+
+        long length = Math.max(1, cursor.length());
+        long lastProgress = 0;
+        long lastCheckpoint = System.currentTimeMillis();
+        boolean complete = false;
+
+        cursor.seek(checkpoint.getPosition());
+
+        try {
+            long sequence = 0;
+            Chunk chunk = new Chunk(sequence++);
+            String line;
+
+            while (true) {
+                line = cursor.next();
+
+                if (line != null) {
+                    chunk.lines++;
+                    Path source = parse(line);
+                    Path dir = source == null ? null : target.targetDir(source);
+                    if (dir != null) {
+                        chunk.sources.add(source);
+                        chunk.targets.add(dir);
+                    }
+                    if (chunk.lines < BATCH) continue;
+                }
+
+                chunk.end = cursor.position();
+
+                // place dans la file ; avancement et point de reprise en attendant
+                while (!inFlight.tryAcquire(PROGRESS_MILLIS, TimeUnit.MILLISECONDS)) {
+                    lastProgress = report(progress, done, moved, committed, finished, length, lastProgress);
+                }
+
+                Chunk submitted = chunk;
+                pool.execute(() -> {
+                    try {
+                        for (int i = 0; i < submitted.sources.size(); i++) {
+                            Outcome outcome = move(submitted.sources.get(i), submitted.targets.get(i), names);
+                            count(outcome, moved, skipped, failed);
+                            if (outcome == Outcome.MOVED) submitted.moved++;
+                            done.incrementAndGet();
+                        }
+                    } finally {
+                        synchronized (finished) {
+                            finished.put(submitted.sequence, submitted);
+                            Chunk next;
+                            while ((next = finished.remove(nextSequence[0])) != null) {
+                                committed[0] = next.end;
+                                committed[1] += next.sources.size();
+                                committed[2] += next.moved;
+                                nextSequence[0]++;
+                            }
+                        }
+                        inFlight.release();
+                    }
+                });
+
+                if (line == null) break;
+                chunk = new Chunk(sequence++);
+
+                if (Thread.interrupted()) throw new InterruptedException();
+
+                lastProgress = report(progress, done, moved, committed, finished, length, lastProgress);
+                if (System.currentTimeMillis() - lastCheckpoint >= CHECKPOINT_MILLIS) {
+                    saveCheckpoint(checkpoint, committed, finished);
+                    lastCheckpoint = System.currentTimeMillis();
+                }
+            }
+
+            while (!inFlight.tryAcquire(permits, PROGRESS_MILLIS, TimeUnit.MILLISECONDS)) {
+                lastProgress = report(progress, done, moved, committed, finished, length, lastProgress);
+            }
+            inFlight.release(permits);
+            complete = true;
+
+            if (progress != null) progress.update(done.get(), moved.get(), 1);
+            return new Result(moved.get(), skipped.get(), failed.get());
+
+        } finally {
+            if (complete) {
+                checkpoint.clear();
+            } else {
+                // lots déjà partis : on les laisse finir pour enregistrer un point exact
+                inFlight.acquireUninterruptibly(permits);
+                saveCheckpoint(checkpoint, committed, finished);
+            }
+            pool.shutdownNow();
+        }
+    }
+
+    private long report(StreamProgress progress, AtomicLong done, AtomicLong moved, long[] committed,
+                        Object lock, long length, long lastProgress) {
+        long now = System.currentTimeMillis();
+        if (progress == null || now - lastProgress < PROGRESS_MILLIS) return lastProgress;
+        long position;
+        synchronized (lock) {
+            position = committed[0];
+        }
+        progress.update(done.get(), moved.get(), Math.min(1.0, (double) position / length));
+        return now;
+    }
+
+    private static void saveCheckpoint(MoveCheckpoint checkpoint, long[] committed, Object lock) {
+        long position, completed, moved;
+        synchronized (lock) {
+            position = committed[0];
+            completed = committed[1];
+            moved = committed[2];
+        }
+        try {
+            checkpoint.save(position, completed, moved);
+        } catch (IOException e) {
+            System.err.println("Checkpoint save failed: " + e.getMessage());
+        }
+    }
+
+    /** ligne de liste → chemin ; null si vide ou invalide */
+    private static Path parse(String line) {
+        String trimmed = line.trim();
+        if (trimmed.isEmpty()) return null;
+        try {
+            Path path = Paths.get(trimmed);
+            return path.getFileName() == null ? null : path;
+        } catch (InvalidPathException e) {
+            System.err.println("Skipping invalid path: " + trimmed);
+            return null;
+        }
+    }
+
+    /* =========================================================
+       DÉPLACEMENT
+       ========================================================= */
+
+    private enum Outcome { MOVED, MISSING, FAILED }
+
+    private static void count(Outcome outcome, AtomicLong moved, AtomicLong skipped, AtomicLong failed) {
+        switch (outcome) {
+            case MOVED:
+                moved.incrementAndGet();
+                break;
+            case MISSING:
+                skipped.incrementAndGet();
+                break;
+            default:
+                failed.incrementAndGet();
+                break;
+        }
+    }
+
+    private ExecutorService newPool() {
+        return Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "move-worker");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    private static Outcome move(Path source, Path targetDir, NameReservationService names) {
+        // avant toute réservation : elle crée et lit le dossier cible
+        if (!Files.exists(source, LinkOption.NOFOLLOW_LINKS)) {
+            return Outcome.MISSING;
+        }
+        try {
+            names.move(source, targetDir, NameReservationService.Style.SUFFIX);
+            return Outcome.MOVED;
+        } catch (NoSuchFileException e) {
+            return Outcome.MISSING;
+        } catch (IOException e) {
+            System.err.println("Move failed: " + source + " (" + e.getMessage() + ")");
+            return Outcome.FAILED;
+        }
+    }
+}
@@ -0,0 +1,614 @@
+package com.rafaros.filemanagerutils.service;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.CopyOption;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+/**
+ * Journal d'écriture anticipée des déplacements en masse.
+ * <p>
+ * Chaque déplacement est d'abord inscrit (source, cible) puis exécuté ; les
+ * inscriptions d'un lot sont rendues durables ensemble par une seule
+ * synchronisation disque ({@link #plan}), et les threads qui synchronisent en
+ * même temps partagent le même {@code force}. Les dossiers créés sont
+ * inscrits aussi. Le journal est supprimé quand l'opération se termine
+ * ({@link #complete()}) ; s'il reste un journal au démarrage, l'opération a
+ * été interrompue : {@link Interrupted#undo()} remet chaque fichier à sa
+ * place (journal lu à l'envers), {@link Interrupted#replay()} termine les
+ * déplacements prévus.
+ * <p>
+ * La reprise ne se fie pas aux confirmations inscrites (écrites sans
+ * synchronisation) : un déplacement est considéré fait si la cible existe et
+ * plus la source, ce qui rend {@code undo} et {@code replay} rejouables.
+ * <p>
+ * Fichier {@code ~/.filemanagerutils/journal/<opération>-<id>.wal} :
+ * <pre>
+ *   "FMJL" version
+ *   enregistrements : longueur, type + données, crc32, longueur (lecture dans les deux sens)
+ * </pre>
+ * Un enregistrement incomplet (arrêt pendant l'écriture) termine le journal.
+ */
+public class MoveJournal implements Closeable {
+
+    private static final int MAGIC = 0x464D4A4C; // "FMJL"
+    private static final int VERSION = 1;
+
+    private static final byte HEADER = 0;
+    private static final byte INTENT = 1;
+    private static final byte DONE = 2;
+    private static final byte FAILED = 3;
+    private static final byte MKDIR = 4;
+
+    /** au-delà, les enregistrements en attente sont écrits (sans synchronisation) */
+    private static final int FLUSH_BYTES = 1024 * 1024;
+
+    private final Path file;
+    private final FileChannel channel;
+
+    // enregistrements pas encore écrits
+    private byte[] pending = new byte[64 * 1024];
+    private int pendingLength;
+    private int recordStart;
+    private long appended;
+    private long nextId;
+
+    // écriture et synchronisation, dans l'ordre du journal
+    private final Object flushLock = new Object();
+    private long written;
+    private volatile long durable;
+
+    private final CRC32 crc = new CRC32();
+
+    private MoveJournal(Path file, FileChannel channel) {
+        this.file = file;
+        this.channel = channel;
+    }
+
+    /* =========================================================
+       OUVERTURE
+       ========================================================= */
+
+    static Path storageDir() {
+        return Path.of(System.getProperty("user.home"), ".filemanagerutils", "journal");
+    }
+
+    /** Ouvre le journal d'une nouvelle opération ({@code operation} : nom court) */
+    public static MoveJournal begin(String operation, Path root) throws IOException {
+        return begin(storageDir(), operation, root);
+    }
+
+    static MoveJournal begin(Path storageDir, String operation, Path root) throws IOException {
+
+        Files.createDirectories(storageDir);
+        Path file = storageDir.resolve(operation + "-" + UUID.randomUUID() + ".wal");
+
+        FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+
+        MoveJournal journal = new MoveJournal(file, channel);
+        try {
+            channel.write(ByteBuffer.allocate(8).putInt(MAGIC).putInt(VERSION).flip());
+            journal.written = journal.appended = 8;
+
+            byte[] op = operation.getBytes(StandardCharsets.UTF_8);
+            byte[] dir = bytes(root);
+            synchronized (journal) {
+                journal.record(HEADER, 4 + op.length + 4 + dir.length + 8)
+                        .putString(op).putString(dir).putLong(System.currentTimeMillis()).end();
+            }
+            journal.sync();
+
+        } catch (IOException | RuntimeException e) {
+            journal.closeQuietly();
+            Files.deleteIfExists(file);
+            throw e;
+        }
+        return journal;
+    }
+
+    /* =========================================================
+       INSCRIPTIONS
+       ========================================================= */
+
+    /** Inscrit un déplacement prévu (durable après {@link #sync()}) ; rend son numéro */
+    public synchronized long intent(Path source, Path target) {
+        long id = nextId++;
+        byte[] s = bytes(source);
+        byte[] t = bytes(target);
+        record(INTENT, 8 + 4 + s.length + 4 + t.length)
+                .putLong(id).putString(s).putString(t).end();
+        return id;
+    }
+
+    /**
+     * Inscrit un lot de déplacements et le rend durable en une seule
+     * synchronisation ; rend le numéro du premier (les suivants se suivent).
+     */
+    public long plan(List<Path> sources, List<Path> targets) throws IOException {
+        long first;
+        synchronized (this) {
+            first = nextId;
+            for (int i = 0; i < sources.size(); i++) {
+                intent(sources.get(i), targets.get(i));
+            }
+        }
+        sync();
+        return first;
+    }
+
+    /** Déplacement effectué */
+    public void committed(long id) throws IOException {
+        status(DONE, id);
+    }
+
+    /** Déplacement abandonné (la source n'a pas bougé) */
+    public void failed(long id) throws IOException {
+        status(FAILED, id);
+    }
+
+    /** Dossier créé par l'opération (supprimé par {@code undo} s'il est vide) */
+    public synchronized void directoryCreated(Path dir) {
+        byte[] d = bytes(dir);
+        record(MKDIR, 4 + d.length).putString(d).end();
+    }
+
+    /**
+     * Déplacement unitaire journalisé (une synchronisation) ; préférer
+     * {@link #plan} pour un lot.
+     */
+    public void move(Path source, Path target, CopyOption... options) throws IOException {
+        long id = intent(source, target);
+        sync();
+        try {
+            Files.move(source, target, options);
+        } catch (IOException e) {
+            failed(id);
+            throw e;
+        }
+        committed(id);
+    }
+
+    private void status(byte type, long id) throws IOException {
+        boolean flush;
+        synchronized (this) {
+            record(type, 8).putLong(id).end();
+            flush = pendingLength >= FLUSH_BYTES;
+        }
+        if (flush) flush(false, 0);
+    }
+
+    /* =========================================================
+       ÉCRITURE GROUPÉE
+       ========================================================= */
+
+    /**
+     * Rend durable tout ce qui a été inscrit jusqu'ici. Si un autre thread
+     * synchronise déjà, on attend son {@code force} et on ne refait le nôtre
+     * que s'il ne couvrait pas nos inscriptions.
+     */
+    public void sync() throws IOException {
+        long target;
+        synchronized (this) {
+            target = appended;
+        }
+        if (durable >= target) return;
+        flush(true, target);
+    }
+
+    private void flush(boolean force, long target) throws IOException {
+        synchronized (flushLock) {
+            // couvert par le force du thread précédent
+            if (force && durable >= target) return;
+
+            byte[] data;
+            int length;
+            long end;
+            synchronized (this) {
+                data = pending;
+                length = pendingLength;
+                end = appended;
+                pending = new byte[Math.max(64 * 1024, Math.min(data.length, FLUSH_BYTES * 2))];
+                pendingLength = 0;
+            }
+
+            if (length > 0) {
+                ByteBuffer buffer = ByteBuffer.wrap(data, 0, length);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                written = end;
+            }
+            if (force && durable < written) {
+                channel.force(false);
+                durable = written;
+            }
+        }
+    }
+
+    /* =========================================================
+       FIN D'OPÉRATION
+       ========================================================= */
+
+    /** Opération terminée : le journal est supprimé */
+    public void complete() throws IOException {
+        closeQuietly();
+        Files.deleteIfExists(file);
+    }
+
+    /**
+     * Annule l'opération en cours (erreur) : chaque déplacement effectué est
+     * défait, dans l'ordre inverse.
+     *
+     * @return nombre de fichiers remis en place
+     */
+    public long rollback() throws IOException {
+        close();
+        return new Interrupted(file).undo();
+    }
+
+    /** Ferme sans supprimer : le journal sera proposé à la reprise */
+    @Override
+    public void close() throws IOException {
+        try {
+            sync();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void closeQuietly() {
+        try {
+            close();
+        } catch (IOException e) {
+            System.err.println("Journal close failed: " + file + " (" + e.getMessage() + ")");
+        }
+    }
+
+    /* =========================================================
+       REPRISE
+       ========================================================= */
+
+    /** Journaux laissés par des opérations interrompues, les plus anciens d'abord */
+    public static List<Interrupted> interrupted() {
+        return interrupted(storageDir());
+    }
+
+    static List<Interrupted> interrupted(Path storageDir) {
+
+        List<Interrupted> result = new ArrayList<>();
+        if (!Files.isDirectory(storageDir)) return result;
+
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(storageDir, "*.wal")) {
+            for (Path file : stream) {
+                try {
+                    result.add(new Interrupted(file));
+                } catch (IOException | RuntimeException e) {
+                    System.err.println("Journal ignored (" + file.getFileName() + "): " + e.getMessage());
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Journal directory unreadable: " + e.getMessage());
+        }
+
+        result.sort((a, b) -> Long.compare(a.startedAt, b.startedAt));
+        return result;
+    }
+
+    /** Opération interrompue, relue depuis son journal */
+    public static final class Interrupted {
+
+        private final Path file;
+        private final String operation;
+        private final Path root;
+        private final long startedAt;
+        private final long planned;
+
+        /** fin du dernier enregistrement complet */
+        private final long validEnd;
+
+        Interrupted(Path file) throws IOException {
+            this.file = file;
+
+            String op = null;
+            Path r = null;
+            long started = 0;
+            long count = 0;
+
+            try (RecordReader reader = new RecordReader(file)) {
+                Record record;
+                while ((record = reader.next()) != null) {
+                    if (record.type == HEADER) {
+                        op = record.string();
+                        r = Paths.get(record.string());
+                        started = record.buffer.getLong();
+                    } else if (record.type == INTENT) {
+                        count++;
+                    }
+                }
+                this.validEnd = reader.position;
+            }
+
+            if (op == null) throw new IOException("Journal without header");
+            this.operation = op;
+            this.root = r;
+            this.startedAt = started;
+            this.planned = count;
+        }
+
+        public String getOperation() {
+            return operation;
+        }
+
+        public Path getRoot() {
+            return root;
+        }
+
+        public long getStartedAt() {
+            return startedAt;
+        }
+
+        /** déplacements inscrits (faits ou non) */
+        public long getPlanned() {
+            return planned;
+        }
+
+        /**
+         * Défait les déplacements effectués, du dernier au premier, puis
+         * supprime les dossiers créés restés vides. Le journal est supprimé
+         * si tout a pu être défait.
+         *
+         * @return nombre de fichiers remis en place
+         */
+        public long undo() throws IOException {
+
+            long restored = 0;
+            long errors = 0;
+
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+
+                long end = validEnd;
+                ByteBuffer length = ByteBuffer.allocate(4);
+
+                while (end > 8) {
+                    length.clear();
+                    readFully(channel, length, end - 4);
+                    int size = length.flip().getInt();
+                    long start = end - 4 - 4 - size - 4;
+
+                    ByteBuffer payload = ByteBuffer.allocate(size);
+                    readFully(channel, payload, start + 4);
+                    payload.flip();
+                    Record record = new Record(payload.get(), payload);
+                    end = start;
+
+                    try {
+                        if (record.type == INTENT) {
+                            record.buffer.getLong();
+                            Path source = Paths.get(record.string());
+                            Path target = Paths.get(record.string());
+
+                            // fait = la cible est là et plus la source
+                            if (Files.exists(target) && !Files.exists(source)) {
+                                Files.createDirectories(source.getParent());
+                                Files.move(target, source);
+                                restored++;
+                            }
+                        } else if (record.type == MKDIR) {
+                            Path dir = Paths.get(record.string());
+                            if (isEmptyDirectory(dir)) {
+                                Files.delete(dir);
+                            }
+                        }
+                    } catch (IOException e) {
+                        errors++;
+                        System.err.println("Undo failed: " + e.getMessage());
+                    }
+                }
+            }
+
+            finish(errors);
+            return restored;
+        }
+
+        /**
+         * Termine les déplacements prévus et pas encore faits, dans l'ordre
+         * du journal. Le journal est supprimé si tout a pu être fait.
+         *
+         * @return nombre de fichiers déplacés
+         */
+        public long replay() throws IOException {
+
+            long moved = 0;
+            long errors = 0;
+
+            try (RecordReader reader = new RecordReader(file)) {
+                Record record;
+                while (reader.position < validEnd && (record = reader.next()) != null) {
+                    try {
+                        if (record.type == INTENT) {
+                            record.buffer.getLong();
+                            Path source = Paths.get(record.string());
+                            Path target = Paths.get(record.string());
+
+                            if (Files.exists(source) && !Files.exists(target)) {
+                                Files.createDirectories(target.getParent());
+                                Files.move(source, target);
+                                moved++;
+                            }
+                        } else if (record.type == MKDIR) {
+                            Files.createDirectories(Paths.get(record.string()));
+                        }
+                    } catch (IOException e) {
+                        errors++;
+                        System.err.println("Replay failed: " + e.getMessage());
+                    }
+                }
+            }
+
+            finish(errors);
+            return moved;
+        }
+
+        /** Oublie l'opération sans rien toucher */
+        public void discard() throws IOException {
+            Files.deleteIfExists(file);
+        }
+
+        private void finish(long errors) throws IOException {
+            if (errors == 0) {
+                Files.deleteIfExists(file);
+            } else {
+                System.err.println("Journal kept (" + errors + " error(s)): " + file);
+            }
+        }
+    }
+
+    /* =========================================================
+       FORMAT
+       ========================================================= */
+
+    /** enregistrement en cours de construction dans {@link #pending} */
+    private MoveJournal record(byte type, int dataLength) {
+        int size = 1 + dataLength;
+        int total = 4 + size + 4 + 4;
+        if (pendingLength + total > pending.length) {
+            pending = Arrays.copyOf(pending, Math.max(pending.length * 2, pendingLength + total));
+        }
+        recordStart = pendingLength;
+        putInt(size);
+        pending[pendingLength++] = type;
+        return this;
+    }
+
+    private MoveJournal putLong(long v) {
+        putInt((int) (v >>> 32));
+        putInt((int) v);
+        return this;
+    }
+
+    private MoveJournal putString(byte[] s) {
+        putInt(s.length);
+        System.arraycopy(s, 0, pending, pendingLength, s.length);
+        pendingLength += s.length;
+        return this;
+    }
+
+    private void putInt(int v) {
+        pending[pendingLength++] = (byte) (v >>> 24);
+        pending[pendingLength++] = (byte) (v >>> 16);
+        pending[pendingLength++] = (byte) (v >>> 8);
+        pending[pendingLength++] = (byte) v;
+    }
+
+    private void end() {
+        int size = pendingLength - recordStart - 4;
+        crc.reset();
+        crc.update(pending, recordStart + 4, size);
+        putInt((int) crc.getValue());
+        putInt(size);
+        appended += pendingLength - recordStart;
+    }
+
+    private static byte[] bytes(Path path) {
+        return path.toAbsolutePath().normalize().toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static final class Record {
+        final byte type;
+        final ByteBuffer buffer;
+
+        Record(byte type, ByteBuffer buffer) {
+            this.type = type;
+            this.buffer = buffer;
+        }
+
+        String string() {
+            byte[] b = new byte[buffer.getInt()];
+            buffer.get(b);
+            return new String(b, StandardCharsets.UTF_8);
+        }
+    }
+
+    /** Lecture dans l'ordre ; s'arrête au premier enregistrement incomplet ou altéré */
+    private static final class RecordReader implements Closeable {
+
+        private final DataInputStream in;
+        private final long size;
+        private final CRC32 crc = new CRC32();
+        long position;
+
+        RecordReader(Path file) throws IOException {
+            InputStream is = Files.newInputStream(file);
+            this.in = new DataInputStream(new BufferedInputStream(is, 256 * 1024));
+            this.size = Files.size(file);
+            try {
+                if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                    throw new IOException("Not a move journal");
+                }
+            } catch (IOException e) {
+                in.close();
+                throw e;
+            }
+            position = 8;
+        }
+
+        Record next() throws IOException {
+            try {
+                if (position + 4 > size) return null;
+                int length = in.readInt();
+                if (length < 1 || position + 4 + length + 8 > size) return null;
+
+                byte[] payload = new byte[length];
+                in.readFully(payload);
+                int checksum = in.readInt();
+                int trailer = in.readInt();
+
+                crc.reset();
+                crc.update(payload);
+                if ((int) crc.getValue() != checksum || trailer != length) return null;
+
+                position += 4 + length + 8;
+                ByteBuffer buffer = ByteBuffer.wrap(payload, 1, length - 1);
+                return new Record(payload[0], buffer);
+
+            } catch (EOFException e) {
+                return null;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) throw new EOFException();
+        }
+    }
+
+    private static boolean isEmptyDirectory(Path dir) throws IOException {
+        if (!Files.isDirectory(dir)) return false;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            return !stream.iterator().hasNext();
+        }
+    }
+}
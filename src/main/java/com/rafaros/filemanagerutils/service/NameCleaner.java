@@ -0,0 +1,108 @@
+package com.rafaros.filemanagerutils.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Nettoyage des noms servant de nom de dossier (déplacement par strates,
+ * nettoyage des dossiers).
+ * <p>
+ * Mêmes règles que les anciens {@code replaceAll} en chaîne, avec des
+ * {@link Pattern} compilés une fois ; le résultat est mis en cache par nom
+ * de base (cache LRU borné, {@code -Dfilemanager.cleanName.cache}, 4096 par
+ * défaut) : dans une liste de photos, les mêmes bases reviennent sans cesse.
+ */
+public final class NameCleaner {
+
+    /* ===== noms de fichiers → dossier cible ===== */
+    private static final Pattern COPY_SUFFIX = Pattern.compile("\\s*\\(\\d+\\)$");
+    private static final Pattern NUMBER_SUFFIX = Pattern.compile("_\\d+$");
+    private static final Pattern LETTER_DIGITS = Pattern.compile("(\\p{L})\\d+$");
+    private static final Pattern DIGITS_LETTER = Pattern.compile("^\\d+(\\p{L})");
+    private static final Pattern EDGE_SYMBOLS =
+            Pattern.compile("^[^\\p{L}\\p{N}\\+\\-_'() ]+|[^\\p{L}\\p{N}\\+\\-_'() ]+$");
+    private static final Pattern SPACES = Pattern.compile("\\s+");
+
+    /* ===== noms de dossiers ===== */
+    private static final Pattern DIGITS = Pattern.compile("\\d+");
+    private static final Pattern EDGE_NON_ALNUM = Pattern.compile("^[^\\p{L}\\p{N}]+|[^\\p{L}\\p{N}]+$");
+
+    private static final int CACHE_SIZE = Integer.getInteger("filemanager.cleanName.cache", 4096);
+
+    private static final Map<String, String> FILE_CACHE = lru();
+    private static final Map<String, String> FOLDER_CACHE = lru();
+
+    private NameCleaner() {
+    }
+
+    /**
+     * Nom de dossier tiré d'un nom de fichier : extension, numéros de copie
+     * ({@code (2)}, {@code _3}), chiffres collés aux lettres et symboles de
+     * bord retirés ; {@code UNKNOWN} si rien ne reste.
+     */
+    public static String cleanFileName(String fileName) {
+
+        int dot = fileName.lastIndexOf('.');
+        String base = dot == -1 ? fileName : fileName.substring(0, dot);
+
+        synchronized (FILE_CACHE) {
+            String cached = FILE_CACHE.get(base);
+            if (cached != null) return cached;
+        }
+
+        String name = base.trim();
+        boolean changed;
+        do {
+            String before = name;
+            name = COPY_SUFFIX.matcher(name).replaceAll("");
+            name = NUMBER_SUFFIX.matcher(name).replaceAll("");
+            name = LETTER_DIGITS.matcher(name).replaceAll("$1");
+            name = DIGITS_LETTER.matcher(name).replaceAll("$1");
+            name = name.trim();
+            changed = !name.equals(before);
+        } while (changed);
+
+        name = EDGE_SYMBOLS.matcher(name).replaceAll("");
+        name = name.replace('\u00A0', ' ')
+                .replace('\u2007', ' ')
+                .replace('\u202F', ' ');
+        name = SPACES.matcher(name).replaceAll(" ").trim();
+        if (name.isEmpty()) name = "UNKNOWN";
+
+        synchronized (FILE_CACHE) {
+            FILE_CACHE.put(base, name);
+        }
+        return name;
+    }
+
+    /**
+     * Nom de dossier nettoyé : chiffres et symboles de bord retirés, espaces
+     * réduits ; peut être vide.
+     */
+    public static String cleanFolderName(String folderName) {
+
+        synchronized (FOLDER_CACHE) {
+            String cached = FOLDER_CACHE.get(folderName);
+            if (cached != null) return cached;
+        }
+
+        String name = DIGITS.matcher(folderName).replaceAll("");
+        name = EDGE_NON_ALNUM.matcher(name).replaceAll("");
+        name = SPACES.matcher(name).replaceAll(" ").trim();
+
+        synchronized (FOLDER_CACHE) {
+            FOLDER_CACHE.put(folderName, name);
+        }
+        return name;
+    }
+
+    private static Map<String, String> lru() {
+        return new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > CACHE_SIZE;
+            }
+        };
+    }
+}
@@ -0,0 +1,240 @@
+package com.rafaros.filemanagerutils.service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Attribution de noms libres dans des dossiers cibles, sans sonder le disque
+ * nom par nom.
+ * <p>
+ * Chaque dossier est listé une seule fois ; ses noms pris sont gardés dans un
+ * ensemble concurrent et chaque nom de base a son compteur : le prochain
+ * suffixe libre s'obtient en temps constant, sans verrou global. Un fichier
+ * créé entre-temps par un tiers est rattrapé par
+ * {@link FileAlreadyExistsException} au moment du déplacement : le nom
+ * suivant est alors essayé.
+ * <p>
+ * Avec un {@link MoveJournal}, les déplacements d'un lot sont inscrits et
+ * rendus durables ensemble avant d'être exécutés ({@link #moveAll}).
+ * <p>
+ * Une instance correspond à une opération (un déplacement en masse, une
+ * fusion…) : l'état des dossiers n'est pas relu ensuite.
+ */
+public class NameReservationService {
+
+    public enum Style {
+        /** {@code nom.ext}, {@code nom_1.ext}, {@code nom_2.ext}… */
+        SUFFIX,
+        /** {@code nom.ext}, {@code 1_nom.ext}, {@code 2_nom.ext}… */
+        PREFIX
+    }
+
+    /** Windows / macOS : deux noms ne différant que par la casse se heurtent */
+    private static final boolean CASE_INSENSITIVE =
+            !System.getProperty("os.name", "").toLowerCase(Locale.ROOT).contains("linux");
+
+    private static final class Directory {
+        final Set<String> names = ConcurrentHashMap.newKeySet();
+        final Map<String, AtomicInteger> counters = new ConcurrentHashMap<>();
+    }
+
+    /** déplacements par synchronisation du journal */
+    public static final int JOURNAL_BATCH = 1024;
+
+    private final Map<Path, Directory> directories = new ConcurrentHashMap<>();
+
+    /* =========================================================
+       RÉSERVATION
+       ========================================================= */
+
+    /**
+     * Réserve un nom libre dérivé de {@code fileName} dans {@code dir}
+     * (créé si besoin).
+     */
+    public Path reserve(Path dir, String fileName, Style style) throws IOException {
+
+        Directory d = directory(dir);
+
+        String key = key(fileName);
+        if (d.names.add(key)) {
+            return dir.resolve(fileName);
+        }
+
+        AtomicInteger counter = d.counters.computeIfAbsent(style.name() + '/' + key, k -> new AtomicInteger(1));
+        while (true) {
+            String candidate = variant(fileName, style, counter.getAndIncrement());
+            if (d.names.add(key(candidate))) {
+                return dir.resolve(candidate);
+            }
+        }
+    }
+
+    /** Réserve exactement {@code name} ; false s'il est déjà pris */
+    public boolean tryReserve(Path dir, String name) throws IOException {
+        return directory(dir).names.add(key(name));
+    }
+
+    /** Rend un nom réservé mais finalement pas utilisé */
+    public void release(Path target) {
+        Directory d = directories.get(normalize(target.getParent()));
+        if (d != null) {
+            d.names.remove(key(target.getFileName().toString()));
+        }
+    }
+
+    /* =========================================================
+       DÉPLACEMENT
+       ========================================================= */
+
+    /** Déplace {@code source} dans {@code dir} sous un nom libre, sans jamais écraser */
+    public Path move(Path source, Path dir, Style style) throws IOException {
+        return move(source, dir, source.getFileName().toString(), style);
+    }
+
+    public Path move(Path source, Path dir, String fileName, Style style) throws IOException {
+        return move(source, dir, fileName, style, null);
+    }
+
+    /** idem, inscrit dans {@code journal} (une synchronisation par fichier) */
+    public Path move(Path source, Path dir, String fileName, Style style, MoveJournal journal) throws IOException {
+        while (true) {
+            Path target = reserve(dir, fileName, style);
+            try {
+                if (journal == null) {
+                    Files.move(source, target);
+                } else {
+                    journal.move(source, target);
+                }
+                return target;
+            } catch (FileAlreadyExistsException e) {
+                // écrit par un tiers depuis la lecture du dossier : le nom reste pris
+            } catch (IOException e) {
+                release(target);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Déplace {@code sources} dans {@code dir} sous des noms libres, par lots
+     * de {@value #JOURNAL_BATCH} inscrits dans {@code journal} en une seule
+     * synchronisation. Un échec est signalé et n'arrête pas le lot.
+     * Sans journal ({@code null}), simples déplacements un par un.
+     *
+     * @return nombre de fichiers déplacés
+     */
+    public int moveAll(List<Path> sources, Path dir, Style style, MoveJournal journal) throws IOException {
+
+        int moved = 0;
+
+        if (journal == null) {
+            for (Path source : sources) {
+                try {
+                    move(source, dir, style);
+                    moved++;
+                } catch (IOException e) {
+                    System.err.println("Move failed: " + source + " (" + e.getMessage() + ")");
+                }
+            }
+            return moved;
+        }
+
+        if (!sources.isEmpty() && !Files.isDirectory(dir)) {
+            journal.directoryCreated(dir);
+        }
+
+        for (int from = 0; from < sources.size(); from += JOURNAL_BATCH) {
+            List<Path> batch = sources.subList(from, Math.min(sources.size(), from + JOURNAL_BATCH));
+
+            List<Path> targets = new ArrayList<>(batch.size());
+            for (Path source : batch) {
+                targets.add(reserve(dir, source.getFileName().toString(), style));
+            }
+
+            long first = journal.plan(batch, targets);
+
+            for (int i = 0; i < batch.size(); i++) {
+                Path source = batch.get(i);
+                Path target = targets.get(i);
+                try {
+                    Files.move(source, target);
+                    journal.committed(first + i);
+                    moved++;
+                } catch (FileAlreadyExistsException e) {
+                    // écrit par un tiers entre-temps : nom suivant, journalisé seul
+                    journal.failed(first + i);
+                    try {
+                        move(source, dir, source.getFileName().toString(), style, journal);
+                        moved++;
+                    } catch (IOException retry) {
+                        System.err.println("Move failed: " + source + " (" + retry.getMessage() + ")");
+                    }
+                } catch (IOException e) {
+                    release(target);
+                    journal.failed(first + i);
+                    System.err.println("Move failed: " + source + " (" + e.getMessage() + ")");
+                }
+            }
+        }
+        return moved;
+    }
+
+    /* =========================================================
+       OUTILS
+       ========================================================= */
+
+    private Directory directory(Path dir) throws IOException {
+        Path key = normalize(dir);
+        Directory d = directories.get(key);
+        if (d != null) return d;
+        try {
+            return directories.computeIfAbsent(key, NameReservationService::load);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static Directory load(Path dir) {
+        Directory d = new Directory();
+        try {
+            Files.createDirectories(dir);
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+                for (Path p : stream) {
+                    d.names.add(key(p.getFileName().toString()));
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return d;
+    }
+
+    static String variant(String fileName, Style style, int n) {
+        if (style == Style.PREFIX) {
+            return n + "_" + fileName;
+        }
+        int dot = fileName.lastIndexOf('.');
+        return dot == -1
+                ? fileName + "_" + n
+                : fileName.substring(0, dot) + "_" + n + fileName.substring(dot);
+    }
+
+    private static Path normalize(Path dir) {
+        return dir.toAbsolutePath().normalize();
+    }
+
+    static String key(String name) {
+        return CASE_INSENSITIVE ? name.toLowerCase(Locale.ROOT) : name;
+    }
+}
@@ -0,0 +1,712 @@
+package com.rafaros.filemanagerutils.service;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Format binaire compact pour les listes de chemins ({@code desktop_2.txt},
+ * {@code filesList_N.txt}).
+ * <p>
+ * Chaque chemin est coupé après son dernier séparateur : le dossier (séparateur
+ * compris) va dans un dictionnaire, l'entrée ne garde que son numéro et le
+ * nom, codé par préfixe commun avec le nom précédent. Les longs préfixes
+ * répétés disparaissent, que la liste soit dans l'ordre du parcours ou mélangée.
+ * <pre>
+ *   "FMPL" version
+ *   blocs de {@value #BLOCK} entrées : varint dossier, varint préfixe commun, varint suffixe, suffixe
+ *   dictionnaire des dossiers (ordre d'apparition, codé par préfixe)
+ *   index des blocs (offset de chaque bloc, accès direct à la n-ième entrée)
+ *   pied : offset dictionnaire, offset index, nombre d'entrées, options (BOM, CRLF), "FMPL"
+ * </pre>
+ * La conversion texte / binaire est sans perte pour un texte UTF-8 valide
+ * (BOM, type de fin de ligne et dernière fin de ligne sont conservés).
+ * La lecture ne crée pas de chaîne par ligne : les dossiers sont décodés une
+ * fois, le nom reste en octets jusqu'à {@link Reader#name()} ou {@link Reader#path()}.
+ */
+public final class PathList {
+
+    private static final int MAGIC = 0x464D504C; // "FMPL"
+    private static final int VERSION = 1;
+
+    static final int BLOCK = 128;
+
+    private static final int FOOTER_BYTES = 8 + 8 + 8 + 4 + 4;
+
+    private static final int FLAG_BOM = 1;
+    private static final int FLAG_CRLF = 2;
+    private static final int FLAG_NO_FINAL_EOL = 4;
+
+    private static final byte[] UTF8_BOM = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF};
+
+    private PathList() {
+    }
+
+    /** true si {@code file} est au format binaire (sinon : texte, une ligne par chemin) */
+    public static boolean isBinary(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            byte[] head = in.readNBytes(4);
+            return head.length == 4 && ByteBuffer.wrap(head).getInt() == MAGIC;
+        }
+    }
+
+    /**
+     * Chemins d'une liste, texte ou binaire (détecté), sans lignes vides ni BOM.
+     * Le flux doit être fermé.
+     */
+    public static Stream<String> lines(Path file) throws IOException {
+
+        if (isBinary(file)) {
+            Reader reader = open(file);
+            Iterator<String> it = new Iterator<>() {
+                private Boolean ready;
+
+                @Override
+                public boolean hasNext() {
+                    if (ready == null) {
+                        try {
+                            ready = reader.next();
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    }
+                    return ready;
+                }
+
+                @Override
+                public String next() {
+                    if (!hasNext()) throw new NoSuchElementException();
+                    ready = null;
+                    return reader.pathString();
+                }
+            };
+            return StreamSupport.stream(
+                            Spliterators.spliteratorUnknownSize(it, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                    .filter(line -> !line.isEmpty())
+                    .onClose(() -> closeQuietly(reader));
+        }
+
+        BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+        boolean[] first = {true};
+        return reader.lines()
+                .map(line -> {
+                    if (first[0]) {
+                        first[0] = false;
+                        if (line.startsWith("\uFEFF")) return line.substring(1);
+                    }
+                    return line;
+                })
+                .filter(line -> !line.isEmpty())
+                .onClose(() -> closeQuietly(reader));
+    }
+
+    /* =========================================================
+       CONVERSIONS
+       ========================================================= */
+
+    /** @return nombre de lignes converties */
+    public static long textToBinary(Path text, Path binary) throws IOException {
+
+        int flags = 0;
+        try (InputStream in = Files.newInputStream(text)) {
+            byte[] head = in.readNBytes(64 * 1024);
+            if (head.length >= 3 && head[0] == UTF8_BOM[0] && head[1] == UTF8_BOM[1] && head[2] == UTF8_BOM[2]) {
+                flags |= FLAG_BOM;
+            }
+            for (int i = 0; i < head.length; i++) {
+                if (head[i] == '\n') {
+                    if (i > 0 && head[i - 1] == '\r') flags |= FLAG_CRLF;
+                    break;
+                }
+            }
+        }
+        try (FileChannel channel = FileChannel.open(text, StandardOpenOption.READ)) {
+            ByteBuffer last = ByteBuffer.allocate(1);
+            if (channel.size() > 0 && channel.read(last, channel.size() - 1) == 1 && last.get(0) != '\n') {
+                flags |= FLAG_NO_FINAL_EOL;
+            }
+        }
+
+        try (BufferedReader reader = Files.newBufferedReader(text, StandardCharsets.UTF_8);
+             Writer writer = new Writer(binary, flags)) {
+            String line;
+            boolean first = true;
+            while ((line = reader.readLine()) != null) {
+                if (first && (flags & FLAG_BOM) != 0 && line.startsWith("\uFEFF")) {
+                    line = line.substring(1);
+                }
+                first = false;
+                writer.add(line);
+            }
+            return writer.size();
+        }
+    }
+
+    /** @return nombre de lignes écrites */
+    public static long binaryToText(Path binary, Path text) throws IOException {
+
+        try (Reader reader = open(binary);
+             OutputStream os = Files.newOutputStream(text)) {
+
+            if (reader.hasBom()) os.write(UTF8_BOM);
+            String separator = reader.isCrlf() ? "\r\n" : "\n";
+
+            try (BufferedWriter writer = new BufferedWriter(
+                    new OutputStreamWriter(os, StandardCharsets.UTF_8), 256 * 1024)) {
+                boolean finalEol = (reader.flags & FLAG_NO_FINAL_EOL) == 0;
+                while (reader.next()) {
+                    writer.write(reader.pathString());
+                    if (finalEol || reader.index() + 1 < reader.size()) writer.write(separator);
+                }
+            }
+            return reader.size();
+        }
+    }
+
+    /* =========================================================
+       ÉCRITURE
+       ========================================================= */
+
+    public static Writer newWriter(Path file) throws IOException {
+        return new Writer(file, FLAG_BOM | (System.lineSeparator().equals("\r\n") ? FLAG_CRLF : 0));
+    }
+
+    /** Écriture séquentielle ; l'index et le dictionnaire sont écrits à la fermeture */
+    public static final class Writer implements Closeable {
+
+        private final ByteOut out;
+        private final int flags;
+
+        private final Map<String, Integer> directoryIds = new HashMap<>();
+        private final List<byte[]> directories = new ArrayList<>();
+
+        private long[] blocks = new long[64];
+        private int blockCount;
+        private long count;
+        private byte[] previous = new byte[0];
+
+        Writer(Path file, int flags) throws IOException {
+            this.out = new ByteOut(Files.newOutputStream(file));
+            this.flags = flags;
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+        }
+
+        public void add(String path) throws IOException {
+
+            int cut = Math.max(path.lastIndexOf('/'), path.lastIndexOf('\\')) + 1;
+            String directory = path.substring(0, cut);
+
+            Integer id = directoryIds.get(directory);
+            if (id == null) {
+                id = directories.size();
+                directoryIds.put(directory, id);
+                directories.add(directory.getBytes(StandardCharsets.UTF_8));
+            }
+
+            byte[] name = path.substring(cut).getBytes(StandardCharsets.UTF_8);
+
+            if (count % BLOCK == 0) {
+                if (blockCount == blocks.length) blocks = Arrays.copyOf(blocks, blockCount * 2);
+                blocks[blockCount++] = out.position();
+                previous = new byte[0];
+            }
+
+            int shared = commonPrefix(previous, name);
+            out.writeVarint(id);
+            out.writeVarint(shared);
+            out.writeVarint(name.length - shared);
+            out.write(name, shared, name.length - shared);
+
+            previous = name;
+            count++;
+        }
+
+        public long size() {
+            return count;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                long directoryOffset = out.position();
+                out.writeVarint(directories.size());
+                byte[] prev = new byte[0];
+                for (byte[] dir : directories) {
+                    int shared = commonPrefix(prev, dir);
+                    out.writeVarint(shared);
+                    out.writeVarint(dir.length - shared);
+                    out.write(dir, shared, dir.length - shared);
+                    prev = dir;
+                }
+
+                long indexOffset = out.position();
+                out.writeInt(blockCount);
+                for (int i = 0; i < blockCount; i++) {
+                    out.writeLong(blocks[i]);
+                }
+
+                out.writeLong(directoryOffset);
+                out.writeLong(indexOffset);
+                out.writeLong(count);
+                out.writeInt(flags);
+                out.writeInt(MAGIC);
+            } finally {
+                out.close();
+            }
+        }
+    }
+
+    /* =========================================================
+       LECTURE
+       ========================================================= */
+
+    public static Reader open(Path file) throws IOException {
+        return new Reader(file);
+    }
+
+    /** Curseur sur les entrées ; {@link #next()} avance, les accesseurs lisent l'entrée courante */
+    public static final class Reader implements Closeable {
+
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(256 * 1024);
+        private long bufferStart;
+
+        private final String[] directories;
+        private final Path[] directoryPaths;
+        private final long[] blocks;
+        private final long count;
+        private final int flags;
+
+        private long index;
+        private int directory;
+        private byte[] name = new byte[256];
+        private int nameLength;
+
+        Reader(Path file) throws IOException {
+
+            this.channel = FileChannel.open(file, StandardOpenOption.READ);
+
+            try {
+                long size = channel.size();
+                if (size < 8 + FOOTER_BYTES) throw new IOException("Not a path list: " + file);
+
+                ByteBuffer footer = readFully(size - FOOTER_BYTES, FOOTER_BYTES);
+                long directoryOffset = footer.getLong();
+                long indexOffset = footer.getLong();
+                this.count = footer.getLong();
+                this.flags = footer.getInt();
+                if (footer.getInt() != MAGIC || readFully(0, 4).getInt() != MAGIC) {
+                    throw new IOException("Not a path list: " + file);
+                }
+
+                ByteBuffer dict = readFully(directoryOffset, (int) (indexOffset - directoryOffset));
+                int dirCount = varint(dict);
+                this.directories = new String[dirCount];
+                this.directoryPaths = new Path[dirCount];
+                byte[] prev = new byte[0];
+                for (int i = 0; i < dirCount; i++) {
+                    int shared = varint(dict);
+                    int suffix = varint(dict);
+                    byte[] dir = Arrays.copyOf(prev, shared + suffix);
+                    dict.get(dir, shared, suffix);
+                    directories[i] = new String(dir, StandardCharsets.UTF_8);
+                    prev = dir;
+                }
+
+                ByteBuffer idx = readFully(indexOffset, (int) (size - FOOTER_BYTES - indexOffset));
+                this.blocks = new long[idx.getInt()];
+                for (int i = 0; i < blocks.length; i++) {
+                    blocks[i] = idx.getLong();
+                }
+
+                position(8);
+
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e instanceof IOException ? (IOException) e : new IOException("Corrupted path list: " + file, e);
+            }
+        }
+
+        /** nombre total d'entrées */
+        public long size() {
+            return count;
+        }
+
+        public boolean hasBom() {
+            return (flags & FLAG_BOM) != 0;
+        }
+
+        public boolean isCrlf() {
+            return (flags & FLAG_CRLF) != 0;
+        }
+
+        /** place le curseur avant l'entrée {@code target} (0 = début) */
+        public void seek(long target) throws IOException {
+            if (target < 0 || target > count) throw new IndexOutOfBoundsException(String.valueOf(target));
+            if (target == count) {
+                index = count;
+                return;
+            }
+            int block = (int) (target / BLOCK);
+            position(blocks[block]);
+            index = (long) block * BLOCK;
+            while (index < target) {
+                next();
+            }
+        }
+
+        /** passe à l'entrée suivante ; false en fin de liste */
+        public boolean next() throws IOException {
+
+            if (index >= count) return false;
+
+            directory = readVarint();
+            int shared = readVarint();
+            int suffix = readVarint();
+
+            int length = shared + suffix;
+            if (length > name.length) {
+                name = Arrays.copyOf(name, Math.max(length, name.length * 2));
+            }
+            readBytes(name, shared, suffix);
+            nameLength = length;
+
+            index++;
+            return true;
+        }
+
+        /** numéro (depuis 0) de l'entrée courante */
+        public long index() {
+            return index - 1;
+        }
+
+        /** dossier de l'entrée courante, séparateur final compris (chaîne partagée) */
+        public String directory() {
+            return directories[directory];
+        }
+
+        public String name() {
+            return new String(name, 0, nameLength, StandardCharsets.UTF_8);
+        }
+
+        public String pathString() {
+            return directories[directory] + name();
+        }
+
+        /** chemin de l'entrée courante ; le dossier n'est converti qu'une fois */
+        public Path path() {
+            Path dir = directoryPaths[directory];
+            if (dir == null) {
+                String d = directories[directory];
+                dir = directoryPaths[directory] = Paths.get(d.isEmpty() ? "" : d);
+            }
+            return dir.resolve(name());
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+
+        /* ---------- tampon ---------- */
+
+        private void position(long position) {
+            bufferStart = position;
+            buffer.clear();
+            buffer.limit(0);
+        }
+
+        private void fill() throws IOException {
+            bufferStart += buffer.limit();
+            buffer.clear();
+            int n = channel.read(buffer, bufferStart);
+            buffer.flip();
+            if (n <= 0) throw new EOFException("Truncated path list");
+        }
+
+        private int readVarint() throws IOException {
+            int value = 0;
+            for (int shift = 0; shift < 32; shift += 7) {
+                if (!buffer.hasRemaining()) fill();
+                int b = buffer.get() & 0xFF;
+                value |= (b & 0x7F) << shift;
+                if (b < 0x80) return value;
+            }
+            throw new IOException("Invalid varint");
+        }
+
+        private void readBytes(byte[] dest, int offset, int length) throws IOException {
+            while (length > 0) {
+                if (!buffer.hasRemaining()) fill();
+                int n = Math.min(length, buffer.remaining());
+                buffer.get(dest, offset, n);
+                offset += n;
+                length -= n;
+            }
+        }
+
+        private ByteBuffer readFully(long position, int length) throws IOException {
+            ByteBuffer b = ByteBuffer.allocate(length);
+            while (b.hasRemaining()) {
+                if (channel.read(b, position + b.position()) < 0) throw new EOFException("Truncated path list");
+            }
+            b.flip();
+            return b;
+        }
+    }
+
+    /* =========================================================
+       CURSEUR REPRENABLE
+       ========================================================= */
+
+    /**
+     * Lecture ligne à ligne d'une liste, texte ou binaire (détecté), avec une
+     * position que l'on peut sauvegarder puis rejoindre : octet pour le texte,
+     * numéro d'entrée pour le binaire. La mémoire utilisée ne dépend pas de
+     * la longueur de la liste.
+     */
+    public static Cursor cursor(Path file) throws IOException {
+        return isBinary(file) ? new BinaryCursor(open(file)) : new TextCursor(file);
+    }
+
+    public abstract static class Cursor implements Closeable {
+
+        /** ligne suivante (BOM retiré, peut être vide) ; null en fin de liste */
+        public abstract String next() throws IOException;
+
+        /** position juste après la dernière ligne rendue */
+        public abstract long position();
+
+        /** reprend la lecture à une position obtenue par {@link #position()} */
+        public abstract void seek(long position) throws IOException;
+
+        /** position de fin de liste */
+        public abstract long length();
+    }
+
+    /** Texte UTF-8 lu par blocs de 1 Mo ; une ligne plus longue agrandit le tampon */
+    private static final class TextCursor extends Cursor {
+
+        private final FileChannel channel;
+        private final long length;
+
+        private byte[] buffer = new byte[1024 * 1024];
+        private long bufferStart;
+        private int start;
+        private int end;
+        private int scanned;
+        private boolean eof;
+
+        TextCursor(Path file) throws IOException {
+            this.channel = FileChannel.open(file, StandardOpenOption.READ);
+            this.length = channel.size();
+            seek(0);
+        }
+
+        @Override
+        public String next() throws IOException {
+            while (true) {
+                for (int i = scanned; i < end; i++) {
+                    if (buffer[i] == '\n') {
+                        int lineEnd = i > start && buffer[i - 1] == '\r' ? i - 1 : i;
+                        String line = new String(buffer, start, lineEnd - start, StandardCharsets.UTF_8);
+                        start = scanned = i + 1;
+                        return line;
+                    }
+                }
+                scanned = end;
+
+                if (eof) {
+                    if (start == end) return null;
+                    int lineEnd = buffer[end - 1] == '\r' ? end - 1 : end;
+                    String line = new String(buffer, start, lineEnd - start, StandardCharsets.UTF_8);
+                    start = scanned = end;
+                    return line;
+                }
+                fill();
+            }
+        }
+
+        @Override
+        public long position() {
+            return bufferStart + start;
+        }
+
+        @Override
+        public void seek(long position) throws IOException {
+            if (position < 0 || position > length) throw new IndexOutOfBoundsException(String.valueOf(position));
+            bufferStart = position;
+            start = end = scanned = 0;
+            eof = false;
+
+            if (position == 0) {
+                fill();
+                if (end >= 3 && buffer[0] == UTF8_BOM[0] && buffer[1] == UTF8_BOM[1] && buffer[2] == UTF8_BOM[2]) {
+                    start = scanned = 3;
+                }
+            }
+        }
+
+        @Override
+        public long length() {
+            return length;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+
+        /** garde la ligne entamée en tête du tampon et lit la suite */
+        private void fill() throws IOException {
+            if (start > 0) {
+                System.arraycopy(buffer, start, buffer, 0, end - start);
+                bufferStart += start;
+                end -= start;
+                scanned -= start;
+                start = 0;
+            }
+            if (end == buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+            int n = channel.read(ByteBuffer.wrap(buffer, end, buffer.length - end), bufferStart + end);
+            if (n < 0) {
+                eof = true;
+            } else {
+                end += n;
+            }
+        }
+    }
+
+    private static final class BinaryCursor extends Cursor {
+
+        private final Reader reader;
+
+        BinaryCursor(Reader reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        public String next() throws IOException {
+            return reader.next() ? reader.pathString() : null;
+        }
+
+        @Override
+        public long position() {
+            return reader.index() + 1;
+        }
+
+        @Override
+        public void seek(long position) throws IOException {
+            reader.seek(position);
+        }
+
+        @Override
+        public long length() {
+            return reader.size();
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+
+    /* =========================================================
+       OUTILS
+       ========================================================= */
+
+    /** Sortie tamponnée qui compte sa position */
+    private static final class ByteOut implements Closeable {
+
+        private final OutputStream out;
+        private long position;
+
+        ByteOut(OutputStream os) {
+            this.out = new BufferedOutputStream(os, 256 * 1024);
+        }
+
+        long position() {
+            return position;
+        }
+
+        void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            position += len;
+        }
+
+        void writeVarint(int value) throws IOException {
+            while ((value & ~0x7F) != 0) {
+                out.write((value & 0x7F) | 0x80);
+                value >>>= 7;
+                position++;
+            }
+            out.write(value);
+            position++;
+        }
+
+        void writeInt(int v) throws IOException {
+            for (int shift = 24; shift >= 0; shift -= 8) out.write(v >>> shift);
+            position += 4;
+        }
+
+        void writeLong(long v) throws IOException {
+            writeInt((int) (v >>> 32));
+            writeInt((int) v);
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+
+    private static int varint(ByteBuffer b) {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int x = b.get() & 0xFF;
+            value |= (x & 0x7F) << shift;
+            if (x < 0x80) return value;
+        }
+        throw new IllegalStateException("Invalid varint");
+    }
+
+    private static int commonPrefix(byte[] a, byte[] b) {
+        int n = Math.min(a.length, b.length);
+        int i = Arrays.mismatch(a, 0, n, b, 0, n);
+        return i < 0 ? n : i;
+    }
+
+    private static void closeQuietly(Closeable c) {
+        try {
+            c.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
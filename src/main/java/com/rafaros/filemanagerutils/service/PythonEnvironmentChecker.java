@@ -1,48 +1,88 @@
 package com.rafaros.filemanagerutils.service;
 
 import java.io.BufferedReader;
+import java.io.IOException;
 import java.io.InputStreamReader;
 
+/**
+ * Vérifie Python + Pillow une seule fois par session : le résultat
+ * (succès ou erreur) est mémorisé et renvoyé aux appels suivants.
+ */
 public class PythonEnvironmentChecker {
 
+    private static final Object LOCK = new Object();
+
+    private static volatile boolean checked;
+    private static volatile IllegalStateException failure;
+
     public static void verifyPythonAndPillowOrThrow() {
+        if (!checked) {
+            synchronized (LOCK) {
+                if (!checked) {
+                    failure = probe();
+                    checked = true;
+                }
+            }
+        }
+
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Variante sans exception pour les chemins de repli.
+     */
+    public static boolean isAvailable() {
         try {
-            // 1️⃣ Vérifier Python
-            Process pythonCheck = new ProcessBuilder("python", "--version")
-                    .redirectErrorStream(true)
-                    .start();
+            verifyPythonAndPillowOrThrow();
+            return true;
+        } catch (IllegalStateException e) {
+            return false;
+        }
+    }
 
-            if (pythonCheck.waitFor() != 0) {
-                throw new IllegalStateException("Python n'est pas installé ou non accessible dans le PATH.");
+    /**
+     * Un seul processus : lancement de Python puis import de Pillow.
+     */
+    private static IllegalStateException probe() {
+        try {
+            Process check;
+            try {
+                check = new ProcessBuilder(
+                        "python",
+                        "-c",
+                        "import PIL; print(PIL.__version__)"
+                )
+                        .redirectErrorStream(true)
+                        .start();
+            } catch (IOException e) {
+                throw new IllegalStateException("Python n'est pas installé ou non accessible dans le PATH.", e);
             }
 
-            // 2️⃣ Vérifier Pillow
-            Process pillowCheck = new ProcessBuilder(
-                    "python",
-                    "-c",
-                    "import PIL; print(PIL.__version__)"
-            )
-                    .redirectErrorStream(true)
-                    .start();
+            String version;
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(check.getInputStream()))) {
+                version = reader.readLine();
+            }
 
-            if (pillowCheck.waitFor() != 0) {
+            if (check.waitFor() != 0) {
                 throw new IllegalStateException("Pillow (PIL) n'est pas installé dans l'environnement Python.");
             }
 
-            // 3️⃣ Lecture optionnelle de la version Pillow
-            try (BufferedReader reader = new BufferedReader(
-                    new InputStreamReader(pillowCheck.getInputStream()))) {
+            System.out.println("Python + Pillow OK (Pillow version: " + version + ")");
+            return null;
 
-                String version = reader.readLine();
-                System.out.println("Python + Pillow OK (Pillow version: " + version + ")");
-            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new IllegalStateException("Vérification de l'environnement Python interrompue.", e);
 
         } catch (Exception e) {
-            throw new IllegalStateException(
+            return new IllegalStateException(
                     "Environnement Python invalide. Vérifie que Python et Pillow sont installés.\n"
                             + "Commande recommandée : pip install pillow",
                     e
             );
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,209 @@
+package com.rafaros.filemanagerutils.service;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Interpréteurs Python gardés au chaud pour la réparation.
+ * <p>
+ * Chaque worker est un {@code python png_to_jpg_repair.py --batch} qui lit
+ * les travaux sur stdin ({@code entrée\tsortie}) et répond une ligne par
+ * travail ({@code OK\t…} / {@code ERR\t…}). Le démarrage de l'interpréteur et
+ * l'import de Pillow ne sont payés qu'une fois par worker.
+ * <p>
+ * Un worker qui ne répond pas dans le délai est tué et remplacé au travail suivant.
+ */
+public class PythonRepairWorkerPool {
+
+    private static final int DEFAULT_WORKERS =
+            Integer.getInteger("filemanager.python.workers", 2);
+
+    private static final long TIMEOUT_SECONDS =
+            Long.getLong("filemanager.python.timeoutSeconds", 120);
+
+    private static PythonRepairWorkerPool shared;
+
+    private final File script;
+    private final Semaphore slots;
+    private final BlockingQueue<Worker> idle = new LinkedBlockingQueue<>();
+
+    /** pool remplacé : les workers rendus sont arrêtés au lieu d'être gardés */
+    private volatile boolean closed;
+
+    /**
+     * Pool commun à toute l'application (créé au premier appel).
+     */
+    public static synchronized PythonRepairWorkerPool shared(File script) {
+        if (shared == null || !shared.script.equals(script)) {
+            if (shared != null) shared.close();
+            shared = new PythonRepairWorkerPool(script, DEFAULT_WORKERS);
+        }
+        return shared;
+    }
+
+    public PythonRepairWorkerPool(File script, int workers) {
+        this.script = script;
+        this.slots = new Semaphore(Math.max(1, workers));
+    }
+
+    /**
+     * Répare {@code input} vers {@code output} (JPEG) ; bloque jusqu'à la réponse.
+     */
+    public boolean repair(File input, File output) {
+
+        String in = input.getAbsolutePath();
+        String out = output.getAbsolutePath();
+
+        // le protocole est ligne / tabulation
+        if (in.indexOf('\t') >= 0 || in.indexOf('\n') >= 0
+                || out.indexOf('\t') >= 0 || out.indexOf('\n') >= 0) {
+            System.err.println("[Python] Unsupported path: " + in);
+            return false;
+        }
+
+        try {
+            slots.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+
+        Worker worker = null;
+
+        try {
+            worker = idle.poll();
+            if (worker == null || !worker.isAlive()) {
+                if (worker != null) worker.destroy();
+                worker = new Worker(script);
+            }
+
+            String response = worker.call(in + "\t" + out);
+
+            if (response == null) {
+                System.err.println("[Python] No response for " + input.getName() + ", restarting worker");
+                worker.destroy();
+                worker = null;
+                return false;
+            }
+
+            if (response.startsWith("OK")) {
+                return output.exists();
+            }
+
+            System.err.println("[Python] " + input.getName() + ": " + response.substring(Math.min(4, response.length())));
+            return false;
+
+        } catch (IOException e) {
+            System.err.println("[Python] Worker failed: " + e.getMessage());
+            if (worker != null) worker.destroy();
+            worker = null;
+            return false;
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            // réponse en attente : le worker n'est plus synchronisé
+            if (worker != null) worker.destroy();
+            worker = null;
+            return false;
+
+        } finally {
+            if (worker != null) {
+                if (closed) {
+                    worker.destroy();
+                } else {
+                    idle.offer(worker);
+                    // close() a pu vider la file juste avant
+                    if (closed) close();
+                }
+            }
+            slots.release();
+        }
+    }
+
+    /**
+     * Arrête les interpréteurs inoccupés ; ceux en cours d'appel sont
+     * arrêtés à leur retour.
+     */
+    public void close() {
+        closed = true;
+        Worker worker;
+        while ((worker = idle.poll()) != null) {
+            worker.destroy();
+        }
+    }
+
+    /* =========================================================
+       WORKER
+       ========================================================= */
+
+    private static final class Worker {
+
+        private final Process process;
+        private final BufferedWriter stdin;
+        private final BlockingQueue<String> responses = new LinkedBlockingQueue<>();
+
+        Worker(File script) throws IOException {
+
+            ProcessBuilder pb = new ProcessBuilder("python", script.getAbsolutePath(), "--batch");
+            pb.environment().put("PYTHONIOENCODING", "utf-8");
+
+            this.process = pb.start();
+            this.stdin = new BufferedWriter(
+                    new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8));
+
+            // stdout : réponses du protocole ; stderr : avertissements Pillow
+            startPump("python-repair-out", new BufferedReader(
+                    new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8)), true);
+            startPump("python-repair-err", new BufferedReader(
+                    new InputStreamReader(process.getErrorStream(), StandardCharsets.UTF_8)), false);
+        }
+
+        /** envoie un travail ; null si pas de réponse dans le délai */
+        String call(String job) throws IOException, InterruptedException {
+            stdin.write(job);
+            stdin.newLine();
+            stdin.flush();
+            return responses.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        }
+
+        boolean isAlive() {
+            return process.isAlive();
+        }
+
+        void destroy() {
+            process.destroyForcibly();
+        }
+
+        private void startPump(String name, BufferedReader reader, boolean protocol) {
+            Thread t = new Thread(() -> {
+                try (reader) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        if (protocol && (line.startsWith("OK") || line.startsWith("ERR"))) {
+                            responses.add(line);
+                        } else {
+                            System.out.println("[Python] " + line);
+                        }
+                    }
+                } catch (IOException ignored) {
+                    // processus terminé
+                }
+                if (protocol) {
+                    // débloque un appel en attente sans attendre le délai
+                    responses.add("ERR\tinterpreter exited");
+                }
+            }, name);
+            t.setDaemon(true);
+            t.start();
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.rafaros.filemanagerutils.service;
+
+import java.util.concurrent.Semaphore;
+
+/**
+ * Outils de réparation, chacun avec son propre plafond de concurrence
+ * (commun à toute l'application) pour que les outils externes lourds
+ * ne saturent pas la machine.
+ * <p>
+ * Plafonds surchargeables via {@code -Dfilemanager.repair.<outil>.limit=N}.
+ */
+public enum RepairBackend {
+
+    MAGICK("magick", 4),
+    JVM("jvm", 8),
+    PYTHON("python", 2);
+
+    interface Step {
+        boolean run() throws Exception;
+    }
+
+    private final Semaphore permits;
+
+    RepairBackend(String key, int defaultLimit) {
+        this.permits = new Semaphore(
+                Math.max(1, Integer.getInteger("filemanager.repair." + key + ".limit", defaultLimit)),
+                true);
+    }
+
+    /**
+     * Exécute {@code step} dès qu'une place est libre pour cet outil.
+     */
+    boolean run(Step step) throws Exception {
+        permits.acquire();
+        try {
+            return step.run();
+        } finally {
+            permits.release();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.rafaros.filemanagerutils.service;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Bilan d'une phase de réparation, alimenté concurremment par les workers.
+ */
+public class RepairReport {
+
+    private final ConcurrentLinkedQueue<RepairResult> results = new ConcurrentLinkedQueue<>();
+
+    void add(RepairResult result) {
+        results.add(result);
+    }
+
+    public List<RepairResult> getResults() {
+        return new ArrayList<>(results);
+    }
+
+    public int getTotal() {
+        return results.size();
+    }
+
+    public int getRepairedCount() {
+        int count = 0;
+        for (RepairResult result : results) {
+            if (result.isRepaired()) count++;
+        }
+        return count;
+    }
+
+    /** fichiers qu'aucun outil n'a pu réparer */
+    public List<RepairResult> getFailures() {
+        List<RepairResult> failures = new ArrayList<>();
+        for (RepairResult result : results) {
+            if (!result.isRepaired()) failures.add(result);
+        }
+        return failures;
+    }
+
+    public int getRetries() {
+        int retries = 0;
+        for (RepairResult result : results) {
+            retries += result.getRetries();
+        }
+        return retries;
+    }
+
+    /** réparations réussies par outil */
+    public Map<RepairBackend, Integer> getRepairedByBackend() {
+        Map<RepairBackend, Integer> counts = new EnumMap<>(RepairBackend.class);
+        for (RepairResult result : results) {
+            RepairBackend backend = result.getBackend();
+            if (backend != null) counts.merge(backend, 1, Integer::sum);
+        }
+        return counts;
+    }
+
+    /**
+     * Résumé lisible pour les boîtes de dialogue ; au plus
+     * {@code maxFailures} échecs listés.
+     */
+    public String summary(int maxFailures) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Repaired ").append(getRepairedCount()).append(" / ").append(getTotal());
+
+        Map<RepairBackend, Integer> byBackend = getRepairedByBackend();
+        if (!byBackend.isEmpty()) {
+            sb.append(" ").append(byBackend);
+        }
+        sb.append(", fallbacks: ").append(getRetries());
+
+        List<RepairResult> failures = getFailures();
+        if (!failures.isEmpty()) {
+            sb.append("\nFailed (").append(failures.size()).append("):");
+            for (int i = 0; i < failures.size() && i < maxFailures; i++) {
+                sb.append("\n • ").append(failures.get(i));
+            }
+            if (failures.size() > maxFailures) {
+                sb.append("\n …");
+            }
+        }
+        return sb.toString();
+    }
+}
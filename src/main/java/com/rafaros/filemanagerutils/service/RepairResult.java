@@ -0,0 +1,104 @@
+package com.rafaros.filemanagerutils.service;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Résultat de la chaîne de réparation d'un fichier : chaque outil essayé,
+ * dans l'ordre, avec son message d'échec éventuel.
+ */
+public class RepairResult {
+
+    /** Une tentative avec un outil */
+    public static final class Attempt {
+
+        private final RepairBackend backend;
+        private final boolean success;
+        private final String message;
+
+        Attempt(RepairBackend backend, boolean success, String message) {
+            this.backend = backend;
+            this.success = success;
+            this.message = message;
+        }
+
+        public RepairBackend getBackend() {
+            return backend;
+        }
+
+        public boolean isSuccess() {
+            return success;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        @Override
+        public String toString() {
+            return backend + (success ? " OK" : " failed" + (message != null ? " (" + message + ")" : ""));
+        }
+    }
+
+    private final File file;
+    private final List<Attempt> attempts = new ArrayList<>(3);
+    private File output;
+    private CorruptionTriage.Result triage;
+
+    RepairResult(File file) {
+        this.file = file;
+    }
+
+    void attempt(RepairBackend backend, boolean success, String message) {
+        attempts.add(new Attempt(backend, success, message));
+    }
+
+    void setTriage(CorruptionTriage.Result triage) {
+        this.triage = triage;
+    }
+
+    void setOutput(File output) {
+        this.output = output;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /** fichier réparé (null en cas d'échec) */
+    public File getOutput() {
+        return output;
+    }
+
+    /** diagnostic structurel fait avant la réparation (peut être null) */
+    public CorruptionTriage.Result getTriage() {
+        return triage;
+    }
+
+    public boolean isRepaired() {
+        return !attempts.isEmpty() && attempts.get(attempts.size() - 1).isSuccess();
+    }
+
+    /** outil qui a réussi (null en cas d'échec) */
+    public RepairBackend getBackend() {
+        return isRepaired() ? attempts.get(attempts.size() - 1).getBackend() : null;
+    }
+
+    public List<Attempt> getAttempts() {
+        return Collections.unmodifiableList(attempts);
+    }
+
+    /** tentatives au-delà de la première (repli sur l'outil suivant) */
+    public int getRetries() {
+        return Math.max(0, attempts.size() - 1);
+    }
+
+    @Override
+    public String toString() {
+        return file.getName() + ": " + (isRepaired() ? "repaired" : "FAILED")
+                + (triage != null ? " [" + triage + "]" : "")
+                + (attempts.isEmpty() ? "" : " " + attempts);
+    }
+}
@@ -0,0 +1,97 @@
+package com.rafaros.filemanagerutils.service;
+
+import java.io.File;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * Phase de réparation concurrente.
+ * <p>
+ * Les fichiers soumis passent chacun par le diagnostic structurel puis les
+ * outils de réparation adaptés ; les workers ne se limitent pas entre eux, ce sont les plafonds de
+ * {@link RepairBackend} qui bornent chaque outil. Les résultats sont
+ * collectés dans un {@link RepairReport}.
+ */
+public class RepairScheduler {
+
+    private final CorruptedRepairService service;
+    private final ExecutorService executor;
+    private final RepairReport report = new RepairReport();
+    private final Consumer<RepairResult> listener;
+
+    /**
+     * @param listener appelé depuis les workers après chaque fichier (peut être null)
+     */
+    public RepairScheduler(CorruptedRepairService service, Consumer<RepairResult> listener) {
+        this(service, defaultThreads(), listener);
+    }
+
+    public RepairScheduler(CorruptedRepairService service, int threads, Consumer<RepairResult> listener) {
+        this.service = service;
+        this.listener = listener;
+
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(Math.max(1, threads), r -> {
+            Thread t = new Thread(r, "repair-worker-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /** assez de threads pour occuper tous les outils en même temps */
+    public static int defaultThreads() {
+        return Integer.getInteger("filemanager.repair.threads",
+                Integer.getInteger("filemanager.repair.magick.limit", 4)
+                        + Integer.getInteger("filemanager.repair.jvm.limit", 8)
+                        + Integer.getInteger("filemanager.repair.python.limit", 2));
+    }
+
+    public CompletableFuture<RepairResult> submit(File file) {
+        return CompletableFuture.supplyAsync(() -> {
+
+            RepairResult result;
+            try {
+                result = service.repair(file, null);
+            } catch (Throwable e) {
+                // compté en échec : la progression doit atteindre le total
+                System.err.println("Repair failed: " + file.getName() + " (" + e + ")");
+                result = new RepairResult(file);
+            }
+
+            report.add(result);
+            if (listener != null) {
+                listener.accept(result);
+            }
+            return result;
+
+        }, executor);
+    }
+
+    /**
+     * Attend la fin des réparations soumises. Si {@code cancelled} devient vrai,
+     * les fichiers pas encore commencés sont abandonnés.
+     */
+    public RepairReport finish(BooleanSupplier cancelled) throws InterruptedException {
+        executor.shutdown();
+        while (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+            if (cancelled.getAsBoolean()) {
+                executor.shutdownNow();
+                break;
+            }
+        }
+        return report;
+    }
+
+    public void cancel() {
+        executor.shutdownNow();
+    }
+
+    public RepairReport getReport() {
+        return report;
+    }
+}
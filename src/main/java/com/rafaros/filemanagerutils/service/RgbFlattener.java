@@ -0,0 +1,299 @@
+package com.rafaros.filemanagerutils.service;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+
+/**
+ * Aplatissement RGBA → RGB sur fond blanc dans des tampons réutilisés.
+ * <p>
+ * Les images avec alpha produites par les lecteurs ImageIO (INT_ARGB,
+ * 4BYTE_ABGR) sont composées directement sur les tableaux
+ * {@code int[]}/{@code byte[]} ; les images opaques sont copiées par la
+ * boucle native de Java2D ; les autres passent par
+ * {@link BufferedImage#getRGB} ligne par ligne.
+ * <p>
+ * Les tampons RGB de sortie viennent d'une réserve commune à tous les
+ * threads, bornée en octets ({@code -Dfilemanager.flatten.poolBytes}) :
+ * l'image renvoyée par {@link #flattenOnWhite} est rendue par
+ * {@link #release} une fois encodée, les plus anciens tampons libres sont
+ * abandonnés au-delà du budget.
+ */
+public final class RgbFlattener {
+
+    /** granularité des classes de taille */
+    private static final int SIZE_STEP = 256;
+
+    /** octets conservés au total dans la réserve (tampons libres) */
+    private static final long POOL_BUDGET_BYTES =
+            Long.getLong("filemanager.flatten.poolBytes", 256L * 1024 * 1024);
+
+    /** un tampon plus gros qu'un quart du budget n'est pas conservé */
+    private static final long MAX_POOLED_BYTES = POOL_BUDGET_BYTES / 4;
+
+    private static final DirectColorModel RGB = new DirectColorModel(24, 0xFF0000, 0x00FF00, 0x0000FF);
+
+    /** tampons libres, du plus ancien au plus récent ; accès sous verrou */
+    private static final Deque<WritableRaster> POOL = new ArrayDeque<>();
+
+    private static long pooledBytes;
+
+    private RgbFlattener() {
+    }
+
+    /**
+     * Compose {@code src} sur blanc dans un tampon TYPE_INT_RGB réutilisable,
+     * à rendre par {@link #release} après usage.
+     */
+    public static BufferedImage flattenOnWhite(BufferedImage src) {
+
+        int width = src.getWidth();
+        int height = src.getHeight();
+
+        BufferedImage buffer = acquire(width, height);
+
+        flattenInto(src, width, height, buffer);
+
+        return buffer.getWidth() == width && buffer.getHeight() == height
+                ? buffer
+                : buffer.getSubimage(0, 0, width, height);
+    }
+
+    /**
+     * Compose les {@code width} x {@code height} premiers pixels de {@code src}
+     * sur blanc dans le coin haut-gauche de {@code dst} (TYPE_INT_RGB).
+     */
+    public static void flattenInto(BufferedImage src, int width, int height, BufferedImage dst) {
+
+        if (src.getTransparency() == Transparency.OPAQUE) {
+            // sans alpha, la boucle native de blit Java2D est la plus rapide
+            Graphics2D g = dst.createGraphics();
+            g.setComposite(AlphaComposite.Src);
+            g.drawImage(src, 0, 0, width, height, 0, 0, width, height, null);
+            g.dispose();
+            return;
+        }
+
+        int[] pixels = ((DataBufferInt) dst.getRaster().getDataBuffer()).getData();
+        flattenInto(src, width, height, pixels, 0, dst.getWidth());
+    }
+
+    /**
+     * Compose les {@code width} x {@code height} premiers pixels de {@code src}
+     * sur blanc dans {@code dst} (0xRRGGBB, ligne de {@code dstStride} pixels).
+     */
+    public static void flattenInto(BufferedImage src, int width, int height,
+                                   int[] dst, int dstOffset, int dstStride) {
+
+        WritableRaster raster = src.getRaster();
+        DataBuffer buffer = raster.getDataBuffer();
+
+        // les sous-images (raster enfant / décalé) passent par le chemin générique
+        boolean direct = raster.getParent() == null
+                && raster.getSampleModelTranslateX() == 0
+                && raster.getSampleModelTranslateY() == 0
+                && buffer.getOffset() == 0
+                && buffer.getNumBanks() == 1;
+
+        if (direct) {
+            switch (src.getType()) {
+                case BufferedImage.TYPE_INT_ARGB:
+                    flattenIntArgb(((DataBufferInt) buffer).getData(), src.getWidth(),
+                            width, height, dst, dstOffset, dstStride);
+                    return;
+                case BufferedImage.TYPE_INT_RGB:
+                    copyIntRgb(((DataBufferInt) buffer).getData(), src.getWidth(),
+                            width, height, dst, dstOffset, dstStride);
+                    return;
+                case BufferedImage.TYPE_4BYTE_ABGR:
+                    flattenByteAbgr(((DataBufferByte) buffer).getData(), src.getWidth(),
+                            width, height, dst, dstOffset, dstStride);
+                    return;
+                case BufferedImage.TYPE_3BYTE_BGR:
+                    copyByteBgr(((DataBufferByte) buffer).getData(), src.getWidth(),
+                            width, height, dst, dstOffset, dstStride);
+                    return;
+                case BufferedImage.TYPE_BYTE_GRAY:
+                    copyByteGray(((DataBufferByte) buffer).getData(), src.getWidth(),
+                            width, height, dst, dstOffset, dstStride);
+                    return;
+                default:
+                    break;
+            }
+        }
+
+        flattenGeneric(src, width, height, dst, dstOffset, dstStride);
+    }
+
+    /* =========================================================
+       CHEMINS DIRECTS
+       ========================================================= */
+
+    private static void flattenIntArgb(int[] src, int srcStride, int width, int height,
+                                       int[] dst, int dstOffset, int dstStride) {
+        for (int y = 0; y < height; y++) {
+            int s = y * srcStride;
+            int d = dstOffset + y * dstStride;
+            for (int x = 0; x < width; x++) {
+                dst[d + x] = composite(src[s + x]);
+            }
+        }
+    }
+
+    private static void copyIntRgb(int[] src, int srcStride, int width, int height,
+                                   int[] dst, int dstOffset, int dstStride) {
+        for (int y = 0; y < height; y++) {
+            System.arraycopy(src, y * srcStride, dst, dstOffset + y * dstStride, width);
+        }
+    }
+
+    private static void flattenByteAbgr(byte[] src, int srcWidth, int width, int height,
+                                        int[] dst, int dstOffset, int dstStride) {
+        for (int y = 0; y < height; y++) {
+            int s = y * srcWidth * 4;
+            int d = dstOffset + y * dstStride;
+            for (int x = 0; x < width; x++, s += 4) {
+                int a = src[s] & 0xFF;
+                int b = src[s + 1] & 0xFF;
+                int g = src[s + 2] & 0xFF;
+                int r = src[s + 3] & 0xFF;
+                dst[d + x] = a == 0xFF
+                        ? (r << 16) | (g << 8) | b
+                        : (blend(r, a) << 16) | (blend(g, a) << 8) | blend(b, a);
+            }
+        }
+    }
+
+    private static void copyByteBgr(byte[] src, int srcWidth, int width, int height,
+                                    int[] dst, int dstOffset, int dstStride) {
+        for (int y = 0; y < height; y++) {
+            int s = y * srcWidth * 3;
+            int d = dstOffset + y * dstStride;
+            for (int x = 0; x < width; x++, s += 3) {
+                dst[d + x] = ((src[s + 2] & 0xFF) << 16) | ((src[s + 1] & 0xFF) << 8) | (src[s] & 0xFF);
+            }
+        }
+    }
+
+    private static void copyByteGray(byte[] src, int srcWidth, int width, int height,
+                                     int[] dst, int dstOffset, int dstStride) {
+        for (int y = 0; y < height; y++) {
+            int s = y * srcWidth;
+            int d = dstOffset + y * dstStride;
+            for (int x = 0; x < width; x++) {
+                int v = src[s + x] & 0xFF;
+                dst[d + x] = (v << 16) | (v << 8) | v;
+            }
+        }
+    }
+
+    private static void flattenGeneric(BufferedImage src, int width, int height,
+                                       int[] dst, int dstOffset, int dstStride) {
+        int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            src.getRGB(0, y, width, 1, row, 0, width);
+            int d = dstOffset + y * dstStride;
+            for (int x = 0; x < width; x++) {
+                dst[d + x] = composite(row[x]);
+            }
+        }
+    }
+
+    /** ARGB non prémultiplié → RGB sur blanc */
+    private static int composite(int argb) {
+        int a = argb >>> 24;
+        if (a == 0xFF) {
+            return argb & 0xFFFFFF;
+        }
+        int r = (argb >> 16) & 0xFF;
+        int g = (argb >> 8) & 0xFF;
+        int b = argb & 0xFF;
+        return (blend(r, a) << 16) | (blend(g, a) << 8) | blend(b, a);
+    }
+
+    /** c·α + 255·(1−α), arrondi */
+    private static int blend(int c, int a) {
+        return 255 - ((255 - c) * a + 127) / 255;
+    }
+
+    /* =========================================================
+       RÉSERVE COMMUNE
+       ========================================================= */
+
+    /**
+     * Rend à la réserve un tampon obtenu par {@link #flattenOnWhite} ;
+     * l'image ne doit plus être utilisée ensuite.
+     */
+    public static void release(BufferedImage image) {
+
+        if (image == null) return;
+
+        // une sous-image partage le raster du tampon entier
+        WritableRaster raster = image.getRaster();
+        while (raster.getParent() instanceof WritableRaster) {
+            raster = (WritableRaster) raster.getParent();
+        }
+
+        long bytes = bytes(raster);
+        if (bytes > MAX_POOLED_BYTES) return;
+
+        synchronized (POOL) {
+            for (WritableRaster pooled : POOL) {
+                if (pooled == raster) return;
+            }
+            POOL.addLast(raster);
+            pooledBytes += bytes;
+
+            while (pooledBytes > POOL_BUDGET_BYTES) {
+                pooledBytes -= bytes(POOL.removeFirst());
+            }
+        }
+    }
+
+    private static BufferedImage acquire(int width, int height) {
+
+        if ((long) width * height * 4 <= MAX_POOLED_BYTES) {
+            synchronized (POOL) {
+                WritableRaster best = null;
+                for (WritableRaster candidate : POOL) {
+                    if (candidate.getWidth() >= width && candidate.getHeight() >= height
+                            && (best == null || bytes(candidate) < bytes(best))) {
+                        best = candidate;
+                    }
+                }
+                if (best != null) {
+                    for (Iterator<WritableRaster> it = POOL.iterator(); it.hasNext(); ) {
+                        if (it.next() == best) {
+                            it.remove();
+                            break;
+                        }
+                    }
+                    pooledBytes -= bytes(best);
+                    return new BufferedImage(RGB, best, false, null);
+                }
+            }
+            return new BufferedImage(RGB,
+                    RGB.createCompatibleWritableRaster(roundUp(width), roundUp(height)), false, null);
+        }
+
+        return new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+    }
+
+    private static long bytes(Raster raster) {
+        return (long) raster.getWidth() * raster.getHeight() * 4;
+    }
+
+    private static int roundUp(int size) {
+        return ((size + SIZE_STEP - 1) / SIZE_STEP) * SIZE_STEP;
+    }
+}
@@ -0,0 +1,338 @@
+package com.rafaros.filemanagerutils.service;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+/**
+ * Génération des listes {@code filesList_N.txt} mélangées, à mémoire bornée.
+ * <p>
+ * Mélange externe en deux passes : chaque chemin est écrit dans l'un des
+ * {@value #BUCKETS} seaux temporaires, choisi par un hachage du chemin et de
+ * la graine, puis chaque seau est chargé, trié, mélangé en mémoire et
+ * recopié à la suite. Le choix pseudo-aléatoire du seau suivi d'un mélange
+ * uniforme dans chaque seau donne une permutation uniforme de l'ensemble,
+ * comme {@link Collections#shuffle} sur la liste complète. Un seau trop gros
+ * pour la mémoire est redécoupé de la même façon.
+ * <p>
+ * Le résultat ne dépend que de la graine et de l'ensemble des chemins, pas
+ * de l'ordre d'arrivée (le parcours parallèle n'est pas ordonné) : une même
+ * graine sur la même arborescence redonne les mêmes listes.
+ * <p>
+ * Mode partitions ({@link #generateShards}) : N listes équilibrées par
+ * dossier parent, chaque dossier étant distribué en tourniquet sur les N
+ * partitions à partir d'un décalage tiré de la graine. Chaque partition
+ * contient ainsi la même proportion de chaque dossier (à un fichier près).
+ * <p>
+ * Mémoire : les tampons d'écriture des seaux + deux seaux (le seau suivant
+ * est lu pendant que le courant est mélangé et écrit).
+ */
+public class ShuffledListGenerator {
+
+    /** Avancement (total = -1 tant que le parcours n'est pas terminé) */
+    public interface Progress {
+        void update(String message, long done, long total);
+    }
+
+    private static final int BUCKETS = 256;
+
+    /** taille max d'un seau chargé en mémoire avant redécoupage */
+    private static final long MAX_BUCKET_BYTES =
+            Long.getLong("filemanager.shuffle.bucketBytes", 64L * 1024 * 1024);
+
+    private final int linesPerFile;
+    private final long seed;
+
+    public ShuffledListGenerator(int linesPerFile, long seed) {
+        this.linesPerFile = Math.max(1, linesPerFile);
+        this.seed = seed;
+    }
+
+    /**
+     * Écrit {@code paths} mélangés dans {@code outputDir/filesList_N.txt}
+     * ({@code linesPerFile} lignes par fichier, voir {@link FileListWriter}).
+     *
+     * @return nombre de fichiers écrits
+     */
+    public int generate(Stream<String> paths, Path outputDir, Progress progress) throws IOException {
+
+        Files.createDirectories(outputDir);
+        Path work = Files.createTempDirectory(outputDir, ".shuffle");
+
+        try {
+            /* ===== 1. DISPERSION ===== */
+            long total = scatter(paths.iterator(), work, seed, progress);
+
+            if (total == 0) {
+                return 0;
+            }
+
+            /* ===== 2. MÉLANGE PAR SEAU + ÉCRITURE ===== */
+            try (FileListWriter out = new FileListWriter(outputDir, linesPerFile)) {
+                gather(work, out, total, seed, progress);
+                return out.filesWritten();
+            }
+
+        } finally {
+            deleteRecursively(work);
+        }
+    }
+
+    /**
+     * Écrit {@code paths} en {@code shards} listes {@code filesList_1..N.txt}
+     * équilibrées par dossier parent, chacune mélangée. Une seule passe sur
+     * {@code paths} ; en mémoire, un compteur par dossier parent.
+     *
+     * @return nombre de chemins écrits
+     */
+    public long generateShards(Stream<String> paths, Path outputDir, int shards, Progress progress)
+            throws IOException {
+
+        Files.createDirectories(outputDir);
+        Path work = Files.createTempDirectory(outputDir, ".shuffle");
+
+        try {
+            /* ===== 1. RÉPARTITION PAR DOSSIER ===== */
+            BufferedWriter[] writers = new BufferedWriter[shards];
+            Map<String, int[]> cursors = new HashMap<>();
+            long total = 0;
+
+            try {
+                for (Iterator<String> it = paths.iterator(); it.hasNext(); ) {
+                    String path = it.next();
+                    String parent = parentOf(path);
+
+                    int[] cursor = cursors.get(parent);
+                    if (cursor == null) {
+                        cursor = new int[]{(int) Long.remainderUnsigned(mix(ConversionManifest.hashString(parent) ^ seed), shards)};
+                        cursors.put(parent, cursor);
+                    }
+                    int shard = cursor[0];
+                    cursor[0] = shard + 1 == shards ? 0 : shard + 1;
+
+                    if (writers[shard] == null) {
+                        writers[shard] = Files.newBufferedWriter(work.resolve("s" + shard), StandardCharsets.UTF_8);
+                    }
+                    writers[shard].write(path);
+                    writers[shard].write('\n');
+
+                    if (++total % 10_000 == 0 && progress != null) {
+                        progress.update("Scanning… " + total + " files", total, -1);
+                    }
+                }
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            } finally {
+                closeAll(writers);
+            }
+
+            if (total == 0) {
+                return 0;
+            }
+
+            /* ===== 2. MÉLANGE DE CHAQUE PARTITION ===== */
+            try (FileListWriter out = new FileListWriter(outputDir, Integer.MAX_VALUE)) {
+                for (int shard = 0; shard < shards; shard++) {
+                    Path file = work.resolve("s" + shard);
+                    if (Files.exists(file)) {
+                        long salt = mix(seed + shard + 1);
+                        Path dir = Files.createDirectory(work.resolve("s" + shard + ".d"));
+                        try (Stream<String> lines = Files.lines(file, StandardCharsets.UTF_8)) {
+                            scatter(lines.iterator(), dir, salt, null);
+                        }
+                        Files.delete(file);
+                        gather(dir, out, total, salt, null);
+                    }
+                    out.nextFile();
+
+                    if (progress != null) {
+                        progress.update("Writing shards… " + (shard + 1) + " / " + shards,
+                                out.linesWritten(), total);
+                    }
+                }
+            }
+            return total;
+
+        } finally {
+            deleteRecursively(work);
+        }
+    }
+
+    /* =========================================================
+       DISPERSION
+       ========================================================= */
+
+    private long scatter(Iterator<String> paths, Path dir, long salt, Progress progress) throws IOException {
+
+        BufferedWriter[] writers = new BufferedWriter[BUCKETS];
+        long count = 0;
+
+        try {
+            while (paths.hasNext()) {
+                String path = paths.next();
+                int b = (int) (mix(ConversionManifest.hashString(path) ^ salt) >>> 56);
+
+                if (writers[b] == null) {
+                    writers[b] = Files.newBufferedWriter(bucket(dir, b), StandardCharsets.UTF_8);
+                }
+                writers[b].write(path);
+                writers[b].write('\n');
+
+                if (++count % 10_000 == 0 && progress != null) {
+                    progress.update("Scanning… " + count + " files", count, -1);
+                }
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            closeAll(writers);
+        }
+
+        return count;
+    }
+
+    /* =========================================================
+       MÉLANGE
+       ========================================================= */
+
+    private void gather(Path dir, FileListWriter out, long total, long salt, Progress progress) throws IOException {
+
+        ExecutorService prefetch = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "shuffle-prefetch");
+            t.setDaemon(true);
+            return t;
+        });
+
+        try {
+            Future<List<String>> next = loadAsync(prefetch, dir, 0);
+
+            for (int b = 0; b < BUCKETS; b++) {
+
+                List<String> lines = await(next);
+                next = b + 1 < BUCKETS ? loadAsync(prefetch, dir, b + 1) : null;
+
+                if (lines == null) {
+                    // seau trop gros : redécoupé sur disque
+                    Path sub = dir.resolve("b" + b + ".d");
+                    Files.createDirectories(sub);
+                    long subSalt = mix(salt + b + 1);
+                    try (Stream<String> big = Files.lines(bucket(dir, b), StandardCharsets.UTF_8)) {
+                        scatter(big.iterator(), sub, subSalt, null);
+                    }
+                    Files.delete(bucket(dir, b));
+                    gather(sub, out, total, subSalt, null);
+                } else {
+                    // ordre d'arrivée neutralisé : seul le mélange décide
+                    Collections.sort(lines);
+                    Collections.shuffle(lines, new Random(mix(salt ^ b)));
+                    for (String line : lines) {
+                        out.write(line);
+                    }
+                }
+
+                if (progress != null) {
+                    progress.update("Writing lists… " + out.linesWritten() + " / " + total,
+                            out.linesWritten(), total);
+                }
+            }
+        } finally {
+            prefetch.shutdownNow();
+        }
+    }
+
+    /** null si le seau dépasse le budget mémoire */
+    private static Future<List<String>> loadAsync(ExecutorService executor, Path dir, int b) {
+        return executor.submit(() -> {
+            Path file = bucket(dir, b);
+            if (!Files.exists(file)) {
+                return Collections.emptyList();
+            }
+            if (Files.size(file) > MAX_BUCKET_BYTES) {
+                return null;
+            }
+            List<String> lines = new ArrayList<>();
+            try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    lines.add(line);
+                }
+            }
+            return lines;
+        });
+    }
+
+    private static List<String> await(Future<List<String>> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /* =========================================================
+       OUTILS
+       ========================================================= */
+
+    /** dossier parent d'un chemin (séparateurs Windows et Unix) */
+    private static String parentOf(String path) {
+        int i = Math.max(path.lastIndexOf('/'), path.lastIndexOf('\\'));
+        return i < 0 ? "" : path.substring(0, i);
+    }
+
+    /** mélange final de splitmix64 */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    private static Path bucket(Path dir, int b) {
+        return dir.resolve("b" + b);
+    }
+
+    private static void closeAll(BufferedWriter[] writers) throws IOException {
+        IOException failure = null;
+        for (BufferedWriter w : writers) {
+            if (w == null) continue;
+            try {
+                w.close();
+            } catch (IOException e) {
+                if (failure == null) failure = e;
+            }
+        }
+        if (failure != null) throw failure;
+    }
+
+    private static void deleteRecursively(Path dir) {
+        try (Stream<Path> walk = Files.walk(dir)) {
+            walk.sorted(Comparator.reverseOrder()).forEach(p -> {
+                try {
+                    Files.deleteIfExists(p);
+                } catch (IOException ignored) {
+                }
+            });
+        } catch (IOException ignored) {
+        }
+    }
+}
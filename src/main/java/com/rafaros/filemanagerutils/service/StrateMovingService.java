@@ -1,13 +1,20 @@
 package com.rafaros.filemanagerutils.service;
 
 import javafx.application.Platform;
+import javafx.beans.value.ChangeListener;
+import javafx.concurrent.Task;
 import javafx.scene.control.*;
 import javafx.stage.DirectoryChooser;
 
 import java.io.*;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Stream;
 
 public class StrateMovingService {
@@ -39,20 +46,32 @@ public class StrateMovingService {
                     return;
                 }
 
-                List<String> restoredFiles = new ArrayList<>();
-                try (BufferedReader reader = new BufferedReader(
-                        new InputStreamReader(new FileInputStream(logPath.toFile()), StandardCharsets.UTF_8))) {
+                // lecture au fil de l'eau (texte ou binaire PathList), reprise au dernier point enregistré
+                MoveCheckpoint checkpoint = MoveCheckpoint.load(logPath, destinationRoot);
+                boolean resumed = checkpoint.isResumed();
+                if (resumed) {
+                    long resumedAt = checkpoint.getCompleted();
+                    Platform.runLater(() -> strateStatusLabel.setText("Status: Resuming after " + resumedAt + " file(s)..."));
+                }
 
-                    String line;
-                    while ((line = reader.readLine()) != null) {
-                        line = line.trim();
-                        if (line.isEmpty()) continue;
-                        if (restoredFiles.isEmpty() && line.startsWith("\uFEFF")) line = line.substring(1);
-                        restoredFiles.add(line);
-                    }
+                MoveEngine engine = new MoveEngine();
+                MoveEngine.Result result;
+
+                try (PathList.Cursor cursor = PathList.cursor(logPath)) {
+                    result = engine.stream(cursor, filePath -> {
+                        if (filePath.toString().startsWith("?")) return null;
+
+                        String cleanFolderName = cleanName(filePath.getFileName().toString());
+                        if (cleanFolderName.isEmpty()) cleanFolderName = "UNKNOWN";
+                        return destinationRoot.resolve(cleanFolderName);
+
+                    }, checkpoint, (done, moved, fraction) -> Platform.runLater(() -> {
+                        exportProgressBar.setProgress(fraction);
+                        strateStatusLabel.setText("Status: Moving file " + done + " (" + (int) (fraction * 100) + "%)");
+                    }));
                 }
 
-                if (restoredFiles.isEmpty()) {
+                if (result.getMoved() + result.getSkipped() + result.getFailed() == 0 && !resumed) {
                     Platform.runLater(() -> {
                         strateStatusLabel.setText("Status: No files to move found in desktop_2.txt");
                         moveFilesButton.setDisable(false);
@@ -61,55 +80,8 @@ public class StrateMovingService {
                     return;
                 }
 
-                int totalFiles = restoredFiles.size();
-                int movedCount = 0;
-
-                for (int i = 0; i < totalFiles; i++) {
-                    String filePathStr = restoredFiles.get(i);
-                    if (filePathStr.startsWith("?")) continue;
-
-                    Path filePath;
-                    try {
-                        filePath = Paths.get(filePathStr);
-                    } catch (InvalidPathException e) {
-                        System.err.println("Skipping invalid path: " + filePathStr);
-                        continue;
-                    }
-
-                    if (!Files.exists(filePath)) continue;
-
-                    String fileName = filePath.getFileName().toString();
-                    String baseName = getFileNameWithoutExtension(fileName);
-                    String ext = getFileExtension(fileName);
-                    String cleanFolderName = cleanName(fileName);
-                    if (cleanFolderName.isEmpty()) cleanFolderName = "UNKNOWN";
-
-                    Path targetDir = destinationRoot.resolve(cleanFolderName);
-                    Files.createDirectories(targetDir);
-                    Path targetFile = targetDir.resolve(fileName);
-
-                    int counter = 1;
-                    while (Files.exists(targetFile)) {
-                        targetFile = targetDir.resolve(baseName + "_" + counter + ext);
-                        counter++;
-                    }
-
-                    try {
-                        Files.move(filePath, targetFile, StandardCopyOption.REPLACE_EXISTING);
-                        movedCount++;
-                    } catch (IOException e) {
-                        e.printStackTrace();
-                    }
-
-                    int finalI = i;
-                    int finalMovedCount = movedCount;
-                    Platform.runLater(() -> {
-                        exportProgressBar.setProgress((double) (finalI + 1) / totalFiles);
-                        strateStatusLabel.setText("Status: Moving file " + (finalI + 1) + "/" + totalFiles);
-                    });
-                }
-
-                int finalMovedCount1 = movedCount;
+                long movedCount = result.getMoved();
+                long finalMovedCount1 = movedCount;
                 Platform.runLater(() -> {
                     strateStatusLabel.setText("Status: " + finalMovedCount1 + " file(s) moved successfully!");
                     moveFilesButton.setDisable(false);
@@ -134,30 +106,14 @@ public class StrateMovingService {
     }
 
     private String cleanName(String fileName) {
-        String name = getFileNameWithoutExtension(fileName).trim();
-        boolean changed;
-        do {
-            String before = name;
-            name = name.replaceAll("\\s*\\(\\d+\\)$", "");
-            name = name.replaceAll("_\\d+$", "");
-            name = name.replaceAll("(\\p{L})\\d+$", "$1");
-            name = name.replaceAll("^\\d+(\\p{L})", "$1");
-            name = name.trim();
-            changed = !name.equals(before);
-        } while (changed);
-
-        name = name.replaceAll(
-                "^[^\\p{L}\\p{N}\\+\\-_'() ]+|[^\\p{L}\\p{N}\\+\\-_'() ]+$",
-                ""
-        );
-        name = name.replace('\u00A0', ' ')
-                .replace('\u2007', ' ')
-                .replace('\u202F', ' ');
-        name = name.replaceAll("\\s+", " ").trim();
-        if (name.isEmpty()) name = "UNKNOWN";
-        return name;
+        return NameCleaner.cleanFileName(fileName);
     }
 
+    /**
+     * Restaure la corbeille du système ({@link TrashSource#detect()} :
+     * PowerShell sous Windows, corbeille freedesktop ailleurs) et écrit les
+     * chemins restaurés dans {@code desktop_2.txt} au fur et à mesure.
+     */
     public void handleExportRecycleBin(Button exportRecycleBinButton, Label strateStatusLabel) {
 
         exportRecycleBinButton.setDisable(true);
@@ -165,52 +121,47 @@ public class StrateMovingService {
         new Thread(() -> {
             try {
 
-                String script =
-                        "$desktopPath = [Environment]::GetFolderPath('Desktop')\n" +
-                                "$logFile = Join-Path $desktopPath 'desktop_2.txt'\n" +
-                                "$shell = New-Object -ComObject Shell.Application\n" +
-                                "$recycleBin = $shell.Namespace(0xA)\n" +
-                                "$results = @()\n" +
-                                "foreach ($item in @($recycleBin.Items())) {\n" +
-                                "    $originalPath = $recycleBin.GetDetailsOf($item, 1)\n" +
-                                "    if ($originalPath) {\n" +
-                                "        $fullPath = Join-Path $originalPath $item.Name\n" +
-                                "        $results += $fullPath\n" +
-                                "        $item.InvokeVerb(\"undelete\")\n" +
-                                "    }\n" +
-                                "}\n" +
-                                "$results | Set-Content -Path $logFile -Encoding UTF8\n";
-
-                Path tempScript = Files.createTempFile("export_restore_recyclebin_", ".ps1");
-                Files.write(tempScript, script.getBytes(StandardCharsets.UTF_8));
-
-                ProcessBuilder pb = new ProcessBuilder(
-                        "powershell.exe",
-                        "-STA",
-                        "-ExecutionPolicy", "Bypass",
-                        "-NoProfile",
-                        "-File", tempScript.toAbsolutePath().toString()
-                );
-
-                Process process = pb.start();
-                int exitCode = process.waitFor();
-                Files.deleteIfExists(tempScript);
+                TrashSource trash = TrashSource.detect();
+
+                Path logFile = Paths.get(System.getProperty("user.home"), "OneDrive", "Desktop", "desktop_2.txt");
+                Path tmp = logFile.resolveSibling(logFile.getFileName() + ".tmp");
+                Files.createDirectories(logFile.getParent());
+
+                Platform.runLater(() -> strateStatusLabel.setText("Status: Restoring " + trash.name() + "..."));
+
+                long restored;
+                long[] lastReport = {System.nanoTime()};
+
+                // comme Set-Content -Encoding UTF8 : avec BOM
+                try (FileListWriter writer = new FileListWriter(tmp, true, System.lineSeparator())) {
+                    restored = trash.restoreAll(path -> {
+                        synchronized (writer) {
+                            writer.write(path.toAbsolutePath().toString());
+
+                            long now = System.nanoTime();
+                            if (now - lastReport[0] >= 250_000_000L) {
+                                lastReport[0] = now;
+                                long count = writer.linesWritten();
+                                Platform.runLater(() -> strateStatusLabel.setText("Status: " + count + " file(s) restored..."));
+                            }
+                        }
+                    });
+                }
+
+                try {
+                    Files.move(tmp, logFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(tmp, logFile, StandardCopyOption.REPLACE_EXISTING);
+                }
 
                 Platform.runLater(() -> {
                     exportRecycleBinButton.setDisable(false);
-                    if (exitCode == 0) {
-                        strateStatusLabel.setText("Status: Recycle Bin restored successfully!");
-                        messageService.showMessage(Alert.AlertType.INFORMATION,
-                                "Success",
-                                "Recycle Bin export completed.\n\n" +
-                                        "✔ Files restored to original locations\n" +
-                                        "✔ desktop_2.txt generated on Desktop");
-                    } else {
-                        strateStatusLabel.setText("Status: PowerShell exited with code " + exitCode);
-                        messageService.showMessage(Alert.AlertType.ERROR,
-                                "Error",
-                                "PowerShell exited with code: " + exitCode);
-                    }
+                    strateStatusLabel.setText("Status: " + restored + " file(s) restored from " + trash.name());
+                    messageService.showMessage(Alert.AlertType.INFORMATION,
+                            "Success",
+                            "Recycle Bin export completed.\n\n" +
+                                    "✔ " + restored + " file(s) restored to original locations\n" +
+                                    "✔ desktop_2.txt generated on Desktop");
                 });
 
             } catch (Exception e) {
@@ -220,13 +171,45 @@ public class StrateMovingService {
                     strateStatusLabel.setText("Status: Error restoring Recycle Bin.");
                     messageService.showMessage(Alert.AlertType.ERROR,
                             "Error",
-                            "An error occurred while exporting/restoring the Recycle Bin.");
+                            "An error occurred while exporting/restoring the Recycle Bin:\n" + e.getMessage());
                 });
             }
         }).start();
     }
 
-    public void handleCleanFoldersName(Label strateStatusLabel) {
+    /* =========================================================
+       NETTOYAGE DES NOMS DE DOSSIERS
+       ========================================================= */
+
+    /** Sous-dossiers dont le nom nettoyé est le même : fusionnés dans un seul */
+    private static final class CleanGroup {
+        final String cleanName;
+        final List<Path> members = new ArrayList<>();
+        // membre déjà au bon nom, gardé tel quel (null : le premier est renommé)
+        Path keep;
+
+        CleanGroup(String cleanName) {
+            this.cleanName = cleanName;
+        }
+    }
+
+    private Task<Integer> cleanFoldersTask;
+
+    /**
+     * Nettoie les noms des sous-dossiers d'un dossier choisi, en tâche de
+     * fond. Un plan regroupe d'abord les sous-dossiers par nom nettoyé ; les
+     * groupes, indépendants, sont ensuite traités en parallèle (renommage du
+     * premier ou fusion dans le dossier déjà au bon nom). Un second clic
+     * annule : les groupes en cours se terminent, les autres ne sont pas
+     * commencés.
+     */
+    public void handleCleanFoldersName(Label strateStatusLabel, Button cleanFoldersButton, ProgressBar progressBar) {
+
+        if (cleanFoldersTask != null && cleanFoldersTask.isRunning()) {
+            cleanFoldersTask.cancel();
+            return;
+        }
+
         DirectoryChooser chooser = new DirectoryChooser();
         chooser.setTitle("Select Parent Folder");
         File parentDir = chooser.showDialog(null);
@@ -235,65 +218,230 @@ public class StrateMovingService {
             return;
         }
 
-        File[] subDirs = parentDir.listFiles(File::isDirectory);
-        if (subDirs == null || subDirs.length == 0) {
-            strateStatusLabel.setText("Status: No subfolders found.");
-            return;
-        }
+        String buttonText = cleanFoldersButton.getText();
+        AtomicInteger cleaned = new AtomicInteger();
+
+        Task<Integer> task = new Task<>() {
+            @Override
+            protected Integer call() throws Exception {
+
+                updateMessage("Status: Planning folder merges...");
+                Path parent = parentDir.toPath();
+
+                /* ---------- PLAN ---------- */
+
+                Map<String, CleanGroup> groups = new LinkedHashMap<>();
+                try (DirectoryStream<Path> stream = Files.newDirectoryStream(parent, Files::isDirectory)) {
+                    for (Path subDir : stream) {
+                        String originalName = subDir.getFileName().toString();
+                        String stripped = NameCleaner.cleanFolderName(originalName);
+                        String cleanFolderName = stripped.isEmpty() ? "UNKNOWN" : stripped;
+
+                        // même règle de casse que le système de fichiers
+                        CleanGroup group = groups.computeIfAbsent(
+                                NameReservationService.key(cleanFolderName), k -> new CleanGroup(cleanFolderName));
+                        group.members.add(subDir);
+
+                        if (group.keep == null && originalName.equals(cleanFolderName)) {
+                            group.keep = subDir;
+                        }
+                    }
+                }
+
+                // rien à faire pour un dossier seul déjà au bon nom
+                groups.values().removeIf(g -> g.members.size() == 1 && g.keep != null);
+
+                int total = groups.size();
+                if (total == 0) {
+                    return 0;
+                }
+
+                /* ---------- EXÉCUTION ---------- */
+
+                NameReservationService names = new NameReservationService();
+                MoveJournal journal = MoveJournal.begin("clean-folders", parent);
+                AtomicInteger done = new AtomicInteger();
 
-        int renamedCount = 0;
+                int threads = Runtime.getRuntime().availableProcessors();
+                ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+                    Thread t = new Thread(r, "clean-folders-worker");
+                    t.setDaemon(true);
+                    return t;
+                });
+
+                try {
+                    List<Future<?>> futures = new ArrayList<>();
+                    for (CleanGroup group : groups.values()) {
+                        futures.add(pool.submit(() -> {
+                            if (isCancelled()) return;
+                            cleaned.addAndGet(cleanGroup(parent, group, names, journal));
+                            int d = done.incrementAndGet();
+                            updateProgress(d, total);
+                            updateMessage("Status: Cleaning folders " + d + "/" + total);
+                        }));
+                    }
+
+                    for (Future<?> future : futures) {
+                        try {
+                            future.get();
+                        } catch (ExecutionException e) {
+                            e.getCause().printStackTrace();
+                        }
+                    }
+
+                } catch (InterruptedException e) {
+                    // annulation : les groupes commencés vont au bout
+                    pool.shutdown();
+                    while (!pool.isTerminated()) {
+                        try {
+                            pool.awaitTermination(1, TimeUnit.SECONDS);
+                        } catch (InterruptedException ignored) {
+                        }
+                    }
+
+                } catch (Exception e) {
+                    journal.close();
+                    throw e;
 
-        for (File subDir : subDirs) {
-            String originalName = subDir.getName();
-            String cleanFolderName = originalName
-                    .replaceAll("\\d+", "")
-                    .replaceAll("^[^\\p{L}\\p{N}]+|[^\\p{L}\\p{N}]+$", "")
-                    .replaceAll("\\s+", " ")
-                    .trim();
-            if (cleanFolderName.isEmpty()) cleanFolderName = "UNKNOWN";
+                } finally {
+                    pool.shutdownNow();
+                }
+
+                // chaque groupe est fini ou pas commencé : rien à reprendre
+                journal.complete();
+                return cleaned.get();
+            }
+        };
+
+        progressBar.setVisible(true);
+        progressBar.setManaged(true);
+        cleanFoldersButton.setText("Cancel Cleaning");
+
+        // écouteurs plutôt que bind() : les autres actions de l'onglet
+        // écrivent aussi dans ce label et cette barre pendant le nettoyage
+        ChangeListener<Number> progressListener = (obs, old, value) -> progressBar.setProgress(value.doubleValue());
+        ChangeListener<String> messageListener = (obs, old, value) -> strateStatusLabel.setText(value);
+        progressBar.setProgress(task.getProgress());
+        task.progressProperty().addListener(progressListener);
+        task.messageProperty().addListener(messageListener);
+
+        Runnable reset = () -> {
+            task.progressProperty().removeListener(progressListener);
+            task.messageProperty().removeListener(messageListener);
+            progressBar.setVisible(false);
+            cleanFoldersButton.setText(buttonText);
+        };
+
+        task.setOnSucceeded(e -> {
+            reset.run();
+            strateStatusLabel.setText("Status: " + task.getValue() + " folder(s) cleaned/merged.");
+        });
+
+        task.setOnCancelled(e -> {
+            reset.run();
+            strateStatusLabel.setText("Status: Cancelled – " + cleaned.get() + " folder(s) cleaned/merged.");
+        });
+
+        task.setOnFailed(e -> {
+            reset.run();
+            task.getException().printStackTrace();
+            strateStatusLabel.setText("Status: Error while cleaning folders.");
+            messageService.showMessage(Alert.AlertType.ERROR,
+                    "Error",
+                    "An error occurred while cleaning folder names.");
+        });
+
+        cleanFoldersTask = task;
+        new Thread(task, "clean-folders-task").start();
+    }
 
-            Path targetDir = parentDir.toPath().resolve(cleanFolderName);
+    /**
+     * Un groupe : le premier membre est renommé si aucun n'a déjà le bon nom,
+     * puis le contenu des autres y est déplacé (noms libres {@code _1},
+     * {@code _2}…) ; un membre vidé est supprimé.
+     *
+     * @return nombre de dossiers renommés ou fusionnés
+     */
+    private static int cleanGroup(Path parent, CleanGroup group, NameReservationService names, MoveJournal journal) {
 
+        int count = 0;
+        List<Path> members = new ArrayList<>(group.members);
+        Path target = group.keep;
+
+        try {
+            if (target == null) {
+                target = parent.resolve(group.cleanName);
+                if (Files.exists(target) && !Files.isDirectory(target)) {
+                    System.err.println("Failed to process folder: " + target + " exists and is not a folder");
+                    return 0;
+                }
+                if (!Files.exists(target)) {
+                    journal.move(members.remove(0), target);
+                    count++;
+                }
+            } else {
+                members.remove(target);
+            }
+        } catch (IOException e) {
+            System.err.println("Failed to process folder: " + group.members.get(0));
+            e.printStackTrace();
+            return count;
+        }
+
+        for (Path member : members) {
             try {
-                if (Files.exists(targetDir)) {
-                    try (Stream<Path> files = Files.list(subDir.toPath())) {
-                        files.forEach(file -> {
-                            try {
-                                if (!Files.isWritable(file)) return;
-                                Path targetFile = targetDir.resolve(file.getFileName());
-                                String nameWithoutExt = getFileNameWithoutExtension(file.getFileName().toString());
-                                String ext = getFileExtension(file.getFileName().toString());
-                                int counter = 1;
-                                while (Files.exists(targetFile)) {
-                                    targetFile = targetDir.resolve(nameWithoutExt + "_" + counter + ext);
-                                    counter++;
-                                }
-                                Files.move(file, targetFile);
-                            } catch (IOException e) {
-                                e.printStackTrace();
-                            }
-                        });
+                List<Path> entries = new ArrayList<>();
+                try (DirectoryStream<Path> stream = Files.newDirectoryStream(member)) {
+                    for (Path entry : stream) {
+                        entries.add(entry);
                     }
+                }
 
-                    File[] remaining = subDir.listFiles();
-                    if (remaining == null || remaining.length == 0) {
-                        Files.delete(subDir.toPath());
+                // un fichier non déplaçable (droits) reste en place, le dossier aussi
+                names.moveAll(entries, target, NameReservationService.Style.SUFFIX, journal);
+
+                try (DirectoryStream<Path> stream = Files.newDirectoryStream(member)) {
+                    if (!stream.iterator().hasNext()) {
+                        Files.delete(member);
                     }
-                    renamedCount++;
-                } else if (!originalName.equals(cleanFolderName)) {
-                    Files.move(subDir.toPath(), targetDir);
-                    renamedCount++;
                 }
+                count++;
+
             } catch (IOException e) {
-                System.err.println("Failed to process folder: " + subDir.getAbsolutePath());
+                System.err.println("Failed to process folder: " + member);
                 e.printStackTrace();
             }
         }
+        return count;
+    }
 
-        strateStatusLabel.setText("Status: " + renamedCount + " folder(s) cleaned/merged.");
+    /* =========================================================
+       EXPORT DE LISTE
+       ========================================================= */
+
+    /** Destination d'une ligne exportée (texte ou binaire) */
+    private interface ListSink {
+        void add(String path) throws IOException;
     }
 
-    public void handleExportFolderList(TextArea selectedFilesInfo) {
+    private Task<Long> exportTask;
+
+    /**
+     * Exporte les fichiers d'un dossier choisi dans {@code desktop_2.txt}, en
+     * tâche de fond : parcours parallèle ({@link DirectoryScanner}, avec
+     * l'index de la racine), écriture par tampons UTF-8 recyclés
+     * ({@link FileListWriter}) ou au format binaire compact ({@link PathList},
+     * lu tel quel par le déplacement par strates). La liste est écrite à côté
+     * puis renommée : une annulation (second clic) laisse l'ancienne intacte.
+     */
+    public void handleExportFolderList(TextArea selectedFilesInfo, Label strateStatusLabel,
+                                       ProgressBar progressBar, boolean binary) {
+
+        if (exportTask != null && exportTask.isRunning()) {
+            exportTask.cancel();
+            return;
+        }
+
         DirectoryChooser directoryChooser = new DirectoryChooser();
         directoryChooser.setTitle("Select Folder to Export List");
 
@@ -303,34 +451,113 @@ public class StrateMovingService {
             return;
         }
 
+        Path root = selectedDir.toPath();
         Path outputPath = Paths.get(System.getProperty("user.home"), "OneDrive", "Desktop", "desktop_2.txt");
+        Path tmp = outputPath.resolveSibling(outputPath.getFileName() + ".tmp");
 
-        try {
-            Files.createDirectories(outputPath.getParent());
-
-            try (BufferedWriter writer = Files.newBufferedWriter(outputPath, StandardCharsets.UTF_8)) {
-                Files.walk(selectedDir.toPath())
-                        .filter(Files::isRegularFile)
-                        .forEach(path -> {
-                            try {
-                                writer.write(path.toAbsolutePath().toString());
-                                writer.newLine();
-                            } catch (IOException e) {
-                                e.printStackTrace();
-                            }
-                        });
+        Task<Long> task = new Task<>() {
+            @Override
+            protected Long call() throws Exception {
+
+                Files.createDirectories(outputPath.getParent());
+                updateMessage("Status: Exporting file list...");
+
+                long count;
+                try (Stream<Path> files = DirectoryScanner.shared()
+                        .stream(root, DirectoryScanner.Filter.ALL, DirectoryIndex.open(root))) {
+
+                    if (binary) {
+                        try (PathList.Writer writer = PathList.newWriter(tmp)) {
+                            count = export(files, writer::add);
+                        }
+                    } else {
+                        // comme l'ancien BufferedWriter : sans BOM, fin de ligne du système
+                        try (FileListWriter writer = new FileListWriter(tmp, false, System.lineSeparator())) {
+                            count = export(files, writer::write);
+                        }
+                    }
+                }
+
+                if (isCancelled()) {
+                    Files.deleteIfExists(tmp);
+                    return count;
+                }
+
+                try {
+                    Files.move(tmp, outputPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(tmp, outputPath, StandardCopyOption.REPLACE_EXISTING);
+                }
+                return count;
             }
 
+            private long export(Stream<Path> files, ListSink sink) throws IOException {
+
+                long start = System.nanoTime();
+                long lastReport = start;
+                long count = 0;
+
+                Iterator<Path> it = files.iterator();
+                while (it.hasNext() && !isCancelled()) {
+                    sink.add(it.next().toAbsolutePath().toString());
+                    count++;
+
+                    if ((count & 1023) == 0) {
+                        long now = System.nanoTime();
+                        if (now - lastReport >= 250_000_000L) {
+                            lastReport = now;
+                            long rate = count * 1_000_000_000L / Math.max(1, now - start);
+                            updateMessage("Status: Exported " + count + " entries (" + rate + " entries/s)");
+                        }
+                    }
+                }
+                return count;
+            }
+        };
+
+        progressBar.setProgress(ProgressBar.INDETERMINATE_PROGRESS);
+        progressBar.setVisible(true);
+        progressBar.setManaged(true);
+        // comme le nettoyage : écouteur, pour ne pas délier le label d'une autre tâche
+        ChangeListener<String> messageListener = (obs, old, value) -> strateStatusLabel.setText(value);
+        task.messageProperty().addListener(messageListener);
+
+        Runnable reset = () -> {
+            task.messageProperty().removeListener(messageListener);
+            progressBar.setVisible(false);
+            progressBar.setProgress(0);
+        };
+
+        task.setOnSucceeded(e -> {
+            reset.run();
+            strateStatusLabel.setText("Status: " + task.getValue() + " entries exported.");
             messageService.showMessage(Alert.AlertType.INFORMATION,
                     "Export Completed",
-                    "File list exported to: " + outputPath.toAbsolutePath());
+                    task.getValue() + " entries exported to: " + outputPath.toAbsolutePath()
+                            + (binary ? " (compact binary list)" : ""));
+        });
 
-        } catch (IOException e) {
-            e.printStackTrace();
+        task.setOnCancelled(e -> {
+            reset.run();
+            strateStatusLabel.setText("Status: Export cancelled, previous list kept.");
+            try {
+                Files.deleteIfExists(tmp);
+            } catch (IOException ex) {
+                ex.printStackTrace();
+            }
+        });
+
+        task.setOnFailed(e -> {
+            reset.run();
+            task.getException().printStackTrace();
+            strateStatusLabel.setText("Status: Export failed.");
             messageService.showMessage(Alert.AlertType.ERROR,
                     "Error",
-                    "Failed to export file list: " + e.getMessage());
-        }
+                    "Failed to export file list: " + task.getException().getMessage());
+        });
+
+        exportTask = task;
+        new Thread(task, "export-list-task").start();
     }
 
     public String getFileNameWithoutExtension(String fileName) {
@@ -0,0 +1,588 @@
+package com.rafaros.filemanagerutils.service;
+
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.*;
+import java.awt.image.*;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.Vector;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Conversion JPG à mémoire bornée pour les très grandes images (scans, panoramas).
+ * <p>
+ * L'encodeur JPEG lit l'image ligne par ligne : on lui fournit une image
+ * virtuelle dont les pixels sont décodés par bandes horizontales au moment
+ * où il les demande. La mémoire dépend de la hauteur de bande et non de la
+ * surface.
+ * <p>
+ * PNG non entrelacé et JPEG : un seul décodage, du début à la fin du flux,
+ * dans une destination virtuelle qui ne garde qu'une bande ; un thread de
+ * décodage remplit les bandes, l'encodeur les consomme dans l'ordre.
+ * Autres formats (PNG entrelacé, GIF, BMP écrivent les lignes dans le
+ * désordre) : chaque bande est relue par
+ * {@link ImageReadParam#setSourceRegion}, au prix d'un redécodage des
+ * lignes qui la précèdent.
+ */
+public class TiledJpegConverter {
+
+    /** au-delà de ce nombre de pixels, la conversion passe en mode bandes */
+    private static final long TILED_THRESHOLD_PIXELS =
+            Long.getLong("filemanager.tiled.thresholdPixels", 40_000_000L);
+
+    /** budget mémoire des bandes en vol (décodée + RGB) */
+    private static final long BAND_BUDGET_BYTES =
+            Long.getLong("filemanager.tiled.bandBytes", 64L * 1024 * 1024);
+
+    /** bandes RGB en circulation : une lue par l'encodeur, une prête, une en décodage */
+    private static final int RGB_BANDS = 3;
+
+    public static boolean isLarge(long width, long height) {
+        return width * height > TILED_THRESHOLD_PIXELS;
+    }
+
+    /**
+     * Lit uniquement l'en-tête pour savoir si l'image doit passer en mode bandes.
+     */
+    public static boolean isLarge(File input) {
+        try (ImageInputStream iis = ImageIO.createImageInputStream(input)) {
+            if (iis == null) return false;
+
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(iis);
+            if (!readers.hasNext()) return false;
+
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(iis, true, true);
+                return isLarge(reader.getWidth(0), reader.getHeight(0));
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    public void convert(File input, File output) throws IOException {
+
+        try (ImageInputStream iis = ImageIO.createImageInputStream(input)) {
+
+            if (iis == null) {
+                throw new IOException("No ImageInputStream");
+            }
+
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(iis);
+            if (!readers.hasNext()) {
+                throw new IOException("No ImageReader found");
+            }
+
+            ImageReader reader = readers.next();
+            Bands bands = null;
+
+            try {
+                // pas de seekForwardOnly : une copie hors ordre relance le décodage
+                reader.setInput(iis, false, true);
+
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+
+                if ((long) width * height > Integer.MAX_VALUE) {
+                    throw new IOException("Image too large: " + width + "x" + height);
+                }
+
+                int bandHeight = bandHeight(reader, width, height);
+
+                bands = isSequential(reader)
+                        ? new StreamedBands(reader, width, height, bandHeight)
+                        : new RegionBands(reader, width, height, bandHeight);
+
+                BandedImage image = new BandedImage(bands, width, height, bandHeight);
+
+                // mode séquentiel : le mode progressif bufferiserait toute l'image dans l'encodeur
+                JpegEncoder.write(image, output, false);
+
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            } finally {
+                if (bands != null) {
+                    bands.close();
+                }
+                reader.dispose();
+            }
+        }
+    }
+
+    private static int bandHeight(ImageReader reader, int width, int height) throws IOException {
+
+        ImageTypeSpecifier type = reader.getRawImageType(0);
+        int bytesPerPixel = 4;
+        if (type != null) {
+            int bits = 0;
+            for (int b = 0; b < type.getNumBands(); b++) {
+                bits += type.getBitsPerBand(b);
+            }
+            bytesPerPixel = Math.max(1, (bits + 7) / 8);
+        }
+
+        // bande décodée + bandes RGB aplaties
+        long bytesPerRow = (long) width * (bytesPerPixel + 4L * RGB_BANDS);
+        long rows = BAND_BUDGET_BYTES / Math.max(1, bytesPerRow);
+
+        return (int) Math.max(16, Math.min(height, rows));
+    }
+
+    /** true si le lecteur écrit les lignes dans l'ordre, en un seul passage */
+    private static boolean isSequential(ImageReader reader) throws IOException {
+
+        String format = reader.getFormatName().toLowerCase();
+
+        if (format.equals("jpeg") || format.equals("jpg")) {
+            return true;
+        }
+        if (!format.equals("png")) {
+            return false;
+        }
+
+        IIOMetadata metadata = reader.getImageMetadata(0);
+        if (metadata == null) {
+            return false;
+        }
+
+        // Adam7 : sept passes sur toute l'image
+        Node root = metadata.getAsTree("javax_imageio_png_1.0");
+        for (Node child = root.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child.getNodeName().equals("IHDR")) {
+                NamedNodeMap attributes = child.getAttributes();
+                Node interlace = attributes.getNamedItem("interlaceMethod");
+                return interlace != null && interlace.getNodeValue().equals("none");
+            }
+        }
+        return false;
+    }
+
+    /* =========================================================
+       IMAGE VIRTUELLE DÉCODÉE PAR BANDES
+       ========================================================= */
+
+    /**
+     * Image RGB d'une seule tuile dont le DataBuffer décode la bande
+     * contenant le pixel demandé. L'encodeur JPEG lit les lignes dans l'ordre,
+     * chaque bande n'est donc décodée qu'une fois.
+     */
+    private static final class BandedImage implements RenderedImage {
+
+        private final int width;
+        private final int height;
+        private final int bandHeight;
+        private final ColorModel colorModel = new DirectColorModel(24, 0xFF0000, 0x00FF00, 0x0000FF);
+        private final SampleModel sampleModel;
+        private final Raster raster;
+
+        BandedImage(Bands bands, int width, int height, int bandHeight) {
+            this.width = width;
+            this.height = height;
+            this.bandHeight = bandHeight;
+            this.sampleModel = colorModel.createCompatibleSampleModel(width, height);
+            this.raster = Raster.createRaster(
+                    sampleModel,
+                    new BandDataBuffer(bands, width, height, bandHeight),
+                    new Point(0, 0));
+        }
+
+        @Override public Vector<RenderedImage> getSources() { return null; }
+        @Override public Object getProperty(String name) { return Image.UndefinedProperty; }
+        @Override public String[] getPropertyNames() { return null; }
+        @Override public ColorModel getColorModel() { return colorModel; }
+        @Override public SampleModel getSampleModel() { return sampleModel; }
+        @Override public int getWidth() { return width; }
+        @Override public int getHeight() { return height; }
+        @Override public int getMinX() { return 0; }
+        @Override public int getMinY() { return 0; }
+        @Override public int getNumXTiles() { return 1; }
+        @Override public int getNumYTiles() { return 1; }
+        @Override public int getMinTileX() { return 0; }
+        @Override public int getMinTileY() { return 0; }
+        @Override public int getTileWidth() { return width; }
+        @Override public int getTileHeight() { return height; }
+        @Override public int getTileGridXOffset() { return 0; }
+        @Override public int getTileGridYOffset() { return 0; }
+        @Override public Raster getTile(int tileX, int tileY) { return raster; }
+        @Override public Raster getData() { return raster; }
+
+        @Override
+        public Raster getData(Rectangle rect) {
+            return raster.createChild(rect.x, rect.y, rect.width, rect.height, rect.x, rect.y, null);
+        }
+
+        /**
+         * Copie bande par bande, de haut en bas : chaque bande n'est décodée
+         * qu'une fois. Sans raster cible, l'image entière est copiée.
+         */
+        @Override
+        public WritableRaster copyData(WritableRaster target) {
+
+            if (target == null) {
+                target = raster.createCompatibleWritableRaster(width, height);
+            }
+
+            Rectangle area = target.getBounds().intersection(new Rectangle(0, 0, width, height));
+            if (area.isEmpty()) {
+                return target;
+            }
+
+            int[] row = new int[area.width * sampleModel.getNumBands()];
+
+            int y = area.y;
+            int end = area.y + area.height;
+            while (y < end) {
+                int bandEnd = Math.min(end, (y / bandHeight + 1) * bandHeight);
+                for (; y < bandEnd; y++) {
+                    raster.getPixels(area.x, y, area.width, 1, row);
+                    target.setPixels(area.x, y, area.width, 1, row);
+                }
+            }
+            return target;
+        }
+    }
+
+    /**
+     * DataBuffer RGB empaqueté (0xRRGGBB) dont une seule bande est en mémoire.
+     * Une écriture ne modifie que la bande courante.
+     */
+    private static final class BandDataBuffer extends DataBuffer {
+
+        private final Bands bands;
+        private final int width;
+        private final int height;
+        private final int bandHeight;
+
+        private int[] rgb;
+        private long bandStart = -1;
+        private long bandEnd = -1;
+
+        BandDataBuffer(Bands bands, int width, int height, int bandHeight) {
+            super(DataBuffer.TYPE_INT, width * height);
+            this.bands = bands;
+            this.width = width;
+            this.height = height;
+            this.bandHeight = bandHeight;
+        }
+
+        @Override
+        public int getElem(int bank, int i) {
+            if (i < bandStart || i >= bandEnd) {
+                loadBand(i / width);
+            }
+            return rgb[(int) (i - bandStart)];
+        }
+
+        @Override
+        public void setElem(int bank, int i, int val) {
+            if (i < bandStart || i >= bandEnd) {
+                loadBand(i / width);
+            }
+            rgb[(int) (i - bandStart)] = val;
+        }
+
+        private void loadBand(int row) {
+
+            int band = row / bandHeight;
+            int rows = Math.min(bandHeight, height - band * bandHeight);
+
+            try {
+                rgb = bands.band(band);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+
+            bandStart = (long) band * bandHeight * width;
+            bandEnd = bandStart + (long) rows * width;
+        }
+    }
+
+    /* =========================================================
+       SOURCES DE BANDES
+       ========================================================= */
+
+    /** Fournit les bandes RGB (0xRRGGBB, {@code width} pixels par ligne) */
+    private interface Bands {
+
+        /** bande n° {@code index} ; valable jusqu'à l'appel suivant */
+        int[] band(int index) throws IOException;
+
+        void close();
+    }
+
+    /**
+     * Une bande par {@link ImageReadParam#setSourceRegion} : accès dans
+     * n'importe quel ordre, mais chaque bande redécode celles qui la
+     * précèdent.
+     */
+    private static final class RegionBands implements Bands {
+
+        private final ImageReader reader;
+        private final int width;
+        private final int height;
+        private final int bandHeight;
+        private final ImageReadParam param;
+        private final int[] rgb;
+
+        /** bande décodée brute, réutilisée comme destination du lecteur */
+        private BufferedImage decoded;
+
+        RegionBands(ImageReader reader, int width, int height, int bandHeight) {
+            this.reader = reader;
+            this.width = width;
+            this.height = height;
+            this.bandHeight = bandHeight;
+            this.param = reader.getDefaultReadParam();
+            this.rgb = new int[width * bandHeight];
+        }
+
+        @Override
+        public int[] band(int index) throws IOException {
+
+            int y0 = index * bandHeight;
+            int rows = Math.min(bandHeight, height - y0);
+
+            param.setSourceRegion(new Rectangle(0, y0, width, rows));
+
+            if (decoded == null) {
+                decoded = reader.read(0, param);
+                // les bandes suivantes réutilisent ce tampon (même taille ou plus petit)
+                if (decoded.getHeight() == bandHeight) {
+                    param.setDestination(decoded);
+                }
+            } else {
+                decoded = reader.read(0, param);
+            }
+
+            RgbFlattener.flattenInto(decoded, width, rows, rgb, 0, width);
+            return rgb;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * Un seul {@code reader.read} du début à la fin du flux, sur un thread de
+     * décodage, dans une destination virtuelle ({@link RingDataBuffer}) qui
+     * ne garde que la bande en cours. Chaque bande terminée est aplatie et
+     * passée à l'encodeur ; le décodage attend qu'une bande RGB soit libre.
+     * Une demande en arrière (copie complète après l'encodage…) relance le
+     * décodage depuis le début.
+     */
+    private static final class StreamedBands implements Bands {
+
+        private final ImageReader reader;
+        private final int width;
+        private final int height;
+        private final int bandHeight;
+
+        /** bandes aplaties prêtes, ou l'erreur du décodage (place toujours libre) */
+        private final BlockingQueue<Object> ready = new ArrayBlockingQueue<>(RGB_BANDS + 1);
+        private final BlockingQueue<int[]> free = new ArrayBlockingQueue<>(RGB_BANDS);
+
+        private Thread decoder;
+        private int[] current;
+        /** indice de {@code current} */
+        private int currentIndex = -1;
+
+        StreamedBands(ImageReader reader, int width, int height, int bandHeight) {
+            this.reader = reader;
+            this.width = width;
+            this.height = height;
+            this.bandHeight = bandHeight;
+        }
+
+        @Override
+        public int[] band(int index) throws IOException {
+
+            if (index == currentIndex) {
+                return current;
+            }
+            if (decoder == null || index < currentIndex) {
+                restart();
+            }
+
+            try {
+                while (currentIndex < index) {
+                    Object item = ready.take();
+                    if (item instanceof Throwable) {
+                        Throwable cause = (Throwable) item;
+                        if (cause instanceof IOException) throw (IOException) cause;
+                        throw new IOException("Band decoding failed", cause);
+                    }
+                    if (current != null) {
+                        free.add(current);
+                    }
+                    current = (int[]) item;
+                    currentIndex++;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted");
+            }
+            return current;
+        }
+
+        private void restart() {
+
+            close();
+
+            ready.clear();
+            free.clear();
+            for (int i = 0; i < RGB_BANDS; i++) {
+                free.add(new int[width * bandHeight]);
+            }
+            current = null;
+            currentIndex = -1;
+
+            decoder = new Thread(this::decode, "tiled-decoder");
+            decoder.setDaemon(true);
+            decoder.start();
+        }
+
+        private void decode() {
+            try {
+                ImageTypeSpecifier type = reader.getImageTypes(0).next();
+                ColorModel colorModel = type.getColorModel();
+
+                SampleModel imageModel = type.getSampleModel(width, height);
+                BufferedImage band = type.createBufferedImage(width, bandHeight);
+
+                RingDataBuffer ring = new RingDataBuffer(band, imageModel, height);
+                BufferedImage destination = new BufferedImage(
+                        colorModel,
+                        Raster.createWritableRaster(imageModel, ring, null),
+                        colorModel.isAlphaPremultiplied(),
+                        null);
+
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setDestination(destination);
+
+                reader.read(0, param);
+                ring.finish();
+
+            } catch (BandInterrupted e) {
+                // arrêt demandé par close()
+            } catch (Throwable e) {
+                if (!Thread.currentThread().isInterrupted()) {
+                    ready.offer(e);
+                }
+            }
+        }
+
+        @Override
+        public void close() {
+            if (decoder == null) {
+                return;
+            }
+            decoder.interrupt();
+            try {
+                decoder.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            decoder = null;
+        }
+
+        /**
+         * DataBuffer de l'image entière pour le lecteur : seules les lignes
+         * de la bande en cours existent. Une écriture sur une ligne au-delà
+         * termine la bande (aplatie puis publiée) ; une écriture en arrière
+         * signale un lecteur non séquentiel.
+         */
+        private final class RingDataBuffer extends DataBuffer {
+
+            private final BufferedImage band;
+            private final DataBuffer storage;
+            private final int stride;
+
+            /** première ligne de la bande en mémoire */
+            private int y0;
+
+            RingDataBuffer(BufferedImage band, SampleModel imageModel, int height) throws IOException {
+                super(band.getRaster().getDataBuffer().getDataType(),
+                        (int) Math.min(Integer.MAX_VALUE, (long) scanlineStride(imageModel) * height),
+                        band.getRaster().getDataBuffer().getNumBanks());
+                this.band = band;
+                this.storage = band.getRaster().getDataBuffer();
+                this.stride = scanlineStride(imageModel);
+
+                if (stride != scanlineStride(band.getSampleModel())) {
+                    throw new IOException("Unsupported sample layout");
+                }
+            }
+
+            @Override
+            public int getElem(int bank, int i) {
+                long offset = i - (long) y0 * stride;
+                return offset >= 0 && offset < storage.getSize() ? storage.getElem(bank, (int) offset) : 0;
+            }
+
+            @Override
+            public void setElem(int bank, int i, int val) {
+                int row = i / stride;
+                if (row < y0) {
+                    throw new IllegalStateException("Reader does not write rows in order");
+                }
+                while (row >= y0 + bandHeight) {
+                    publish(bandHeight);
+                    y0 += bandHeight;
+                }
+                storage.setElem(bank, i - y0 * stride, val);
+            }
+
+            /** publie la dernière bande, éventuellement incomplète */
+            void finish() {
+                if (y0 < height) {
+                    publish(height - y0);
+                }
+            }
+
+            private void publish(int rows) {
+                try {
+                    int[] rgb = free.take();
+                    RgbFlattener.flattenInto(band, width, rows, rgb, 0, width);
+                    ready.put(rgb);
+                } catch (InterruptedException e) {
+                    // le lecteur peut envelopper l'exception : l'indicateur reste levé
+                    Thread.currentThread().interrupt();
+                    throw new BandInterrupted();
+                }
+            }
+        }
+    }
+
+    /** remonte l'arrêt du thread de décodage à travers le lecteur */
+    private static final class BandInterrupted extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+    }
+
+    private static int scanlineStride(SampleModel model) throws IOException {
+        if (model instanceof ComponentSampleModel) {
+            return ((ComponentSampleModel) model).getScanlineStride();
+        }
+        if (model instanceof MultiPixelPackedSampleModel) {
+            return ((MultiPixelPackedSampleModel) model).getScanlineStride();
+        }
+        if (model instanceof SinglePixelPackedSampleModel) {
+            return ((SinglePixelPackedSampleModel) model).getScanlineStride();
+        }
+        throw new IOException("Unsupported sample model: " + model.getClass().getSimpleName());
+    }
+}
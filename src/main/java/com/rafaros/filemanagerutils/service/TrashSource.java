@@ -0,0 +1,37 @@
+package com.rafaros.filemanagerutils.service;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * Corbeille dont on restaure tout le contenu à son emplacement d'origine.
+ * <p>
+ * Chaque chemin restauré est passé au {@link Sink} dès que le fichier est
+ * revenu en place (écriture de {@code desktop_2.txt}, ou directement le
+ * déplacement par strates) ; le puits peut être appelé depuis plusieurs
+ * threads.
+ */
+public interface TrashSource {
+
+    /** Reçoit les chemins restaurés */
+    interface Sink {
+        void restored(Path path) throws IOException;
+    }
+
+    /** nom affiché */
+    String name();
+
+    /**
+     * Restaure tout le contenu de la corbeille ; bloque jusqu'à la fin.
+     *
+     * @return nombre d'éléments restaurés
+     */
+    long restoreAll(Sink sink) throws IOException, InterruptedException;
+
+    /** Corbeille du système courant : Windows, sinon corbeille freedesktop */
+    static TrashSource detect() {
+        String os = System.getProperty("os.name", "").toLowerCase(Locale.ROOT);
+        return os.contains("win") ? new WindowsRecycleBin() : XdgTrash.home();
+    }
+}
@@ -0,0 +1,83 @@
+package com.rafaros.filemanagerutils.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Corbeille Windows, restaurée par PowerShell (COM {@code Shell.Application},
+ * verbe {@code undelete}, élément par élément).
+ * <p>
+ * Le script écrit chaque chemin restauré sur sa sortie standard, en UTF-8 ;
+ * les chemins sont lus au fil de l'eau et passés au puits.
+ */
+public class WindowsRecycleBin implements TrashSource {
+
+    private static final String SCRIPT =
+            "[Console]::OutputEncoding = [System.Text.Encoding]::UTF8\n" +
+                    "$shell = New-Object -ComObject Shell.Application\n" +
+                    "$recycleBin = $shell.Namespace(0xA)\n" +
+                    "foreach ($item in @($recycleBin.Items())) {\n" +
+                    "    $originalPath = $recycleBin.GetDetailsOf($item, 1)\n" +
+                    "    if ($originalPath) {\n" +
+                    "        $fullPath = Join-Path $originalPath $item.Name\n" +
+                    "        $item.InvokeVerb(\"undelete\")\n" +
+                    "        Write-Output $fullPath\n" +
+                    "    }\n" +
+                    "}\n";
+
+    @Override
+    public String name() {
+        return "Recycle Bin";
+    }
+
+    @Override
+    public long restoreAll(Sink sink) throws IOException, InterruptedException {
+
+        Path tempScript = Files.createTempFile("restore_recyclebin_", ".ps1");
+        try {
+            Files.write(tempScript, SCRIPT.getBytes(StandardCharsets.UTF_8));
+
+            ProcessBuilder pb = new ProcessBuilder(
+                    "powershell.exe",
+                    "-STA",
+                    "-ExecutionPolicy", "Bypass",
+                    "-NoProfile",
+                    "-File", tempScript.toAbsolutePath().toString()
+            );
+            pb.redirectError(ProcessBuilder.Redirect.INHERIT);
+
+            Process process = pb.start();
+            long restored = 0;
+
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    line = line.trim();
+                    if (line.isEmpty()) continue;
+                    try {
+                        sink.restored(Paths.get(line));
+                        restored++;
+                    } catch (InvalidPathException e) {
+                        System.err.println("Skipping invalid path: " + line);
+                    }
+                }
+            }
+
+            int exitCode = process.waitFor();
+            if (exitCode != 0) {
+                throw new IOException("PowerShell exited with code " + exitCode);
+            }
+            return restored;
+
+        } finally {
+            Files.deleteIfExists(tempScript);
+        }
+    }
+}
@@ -0,0 +1,346 @@
+package com.rafaros.filemanagerutils.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Corbeille freedesktop de l'utilisateur
+ * ({@code $XDG_DATA_HOME/Trash}, par défaut {@code ~/.local/share/Trash}).
+ * <p>
+ * Chaque élément est {@code files/<nom>}, décrit par
+ * {@code info/<nom>.trashinfo} ({@code Path=} : chemin d'origine encodé en
+ * pourcentages, absolu ou relatif au dossier qui contient la corbeille).
+ * Les fiches sont lues en parallèle par lots de
+ * {@value NameReservationService#JOURNAL_BATCH} ; chaque lot est inscrit au
+ * {@link MoveJournal} en une synchronisation, puis restauré par simples
+ * renommages. Un nom d'origine déjà pris reçoit un suffixe {@code _1},
+ * {@code _2}… La fiche d'un élément restauré est déplacée, dans le même lot
+ * journalisé, vers {@code .restoring/} : après un arrêt brutal, annuler
+ * remet fichier et fiche ensemble dans la corbeille. Les fiches mises de
+ * côté et les lignes {@code directorysizes} des éléments restaurés ne sont
+ * supprimées qu'une fois l'opération terminée.
+ */
+public class XdgTrash implements TrashSource {
+
+    private static final String INFO_SUFFIX = ".trashinfo";
+
+    /** fiches des éléments restaurés, jusqu'à la fin de l'opération */
+    private static final String STAGING = ".restoring";
+
+    private static final int THREADS = Math.max(2, Math.min(8, Runtime.getRuntime().availableProcessors()));
+
+    private final Path trashDir;
+
+    public XdgTrash(Path trashDir) {
+        this.trashDir = trashDir;
+    }
+
+    public static XdgTrash home() {
+        String dataHome = System.getenv("XDG_DATA_HOME");
+        Path base = dataHome != null && !dataHome.isEmpty()
+                ? Paths.get(dataHome)
+                : Paths.get(System.getProperty("user.home"), ".local", "share");
+        return new XdgTrash(base.resolve("Trash"));
+    }
+
+    @Override
+    public String name() {
+        return "Trash (" + trashDir + ")";
+    }
+
+    /* =========================================================
+       RESTAURATION
+       ========================================================= */
+
+    @Override
+    public long restoreAll(Sink sink) throws IOException, InterruptedException {
+
+        Path infoDir = trashDir.resolve("info");
+        if (!Files.isDirectory(infoDir)) return 0;
+
+        List<Path> infos = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(infoDir, "*" + INFO_SUFFIX)) {
+            for (Path info : stream) {
+                infos.add(info);
+            }
+        }
+        if (infos.isEmpty()) return 0;
+
+        Path staging = trashDir.resolve(STAGING);
+        clearStaging(staging);
+
+        AtomicLong restored = new AtomicLong();
+        Set<String> restoredNames = ConcurrentHashMap.newKeySet();
+
+        NameReservationService names = new NameReservationService();
+        MoveJournal journal = MoveJournal.begin("trash-restore", trashDir);
+
+        journal.directoryCreated(staging);
+        Files.createDirectories(staging);
+
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS, r -> {
+            Thread t = new Thread(r, "trash-restore-worker");
+            t.setDaemon(true);
+            return t;
+        });
+
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int from = 0; from < infos.size(); from += NameReservationService.JOURNAL_BATCH) {
+                List<Path> batch = infos.subList(from,
+                        Math.min(infos.size(), from + NameReservationService.JOURNAL_BATCH));
+                futures.add(pool.submit(() -> {
+                    restoreBatch(batch, staging, names, journal, sink, restored, restoredNames);
+                    return null;
+                }));
+            }
+
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof IOException) throw (IOException) cause;
+                    throw new IOException(cause);
+                }
+            }
+
+        } catch (IOException | InterruptedException e) {
+            // journal conservé : annulation ou reprise proposée au prochain lancement
+            journal.close();
+            throw e;
+        } finally {
+            pool.shutdownNow();
+        }
+
+        journal.complete();
+        // fiches mises de côté : plus rien ne peut les remettre en place
+        clearStaging(staging);
+        removeDirectorySizes(restoredNames);
+        return restored.get();
+    }
+
+    /**
+     * Vide le dossier des fiches mises de côté par une restauration
+     * précédente ; refuse si son journal attend encore une décision
+     * (annuler remettrait ces fiches dans {@code info/}).
+     */
+    private void clearStaging(Path staging) throws IOException {
+
+        if (!Files.isDirectory(staging)) return;
+
+        for (MoveJournal.Interrupted job : MoveJournal.interrupted()) {
+            if (job.getOperation().equals("trash-restore") && trashDir.equals(job.getRoot())) {
+                throw new IOException("An interrupted restore of " + trashDir
+                        + " must be undone or finished first");
+            }
+        }
+
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(staging)) {
+            for (Path info : stream) {
+                Files.deleteIfExists(info);
+            }
+        }
+        Files.deleteIfExists(staging);
+    }
+
+    private void restoreBatch(List<Path> infos, Path staging, NameReservationService names, MoveJournal journal,
+                              Sink sink, AtomicLong restored, Set<String> restoredNames) throws IOException {
+
+        List<Path> infoFiles = new ArrayList<>(infos.size());
+        List<Path> sources = new ArrayList<>(infos.size());
+        List<Path> targets = new ArrayList<>(infos.size());
+        List<Path> originals = new ArrayList<>(infos.size());
+
+        for (Path info : infos) {
+            String fileName = info.getFileName().toString();
+            String trashName = fileName.substring(0, fileName.length() - INFO_SUFFIX.length());
+            Path trashed = trashDir.resolve("files").resolve(trashName);
+
+            Path original;
+            try {
+                original = originalPath(info);
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Trash entry ignored (" + fileName + "): " + e.getMessage());
+                continue;
+            }
+            if (original == null || original.getFileName() == null) {
+                System.err.println("Trash entry ignored (" + fileName + "): no Path");
+                continue;
+            }
+            if (!Files.exists(trashed)) {
+                System.err.println("Trash entry ignored (" + fileName + "): file missing");
+                continue;
+            }
+
+            // dossiers d'origine disparus : recréés par la réservation, supprimés par undo
+            recordMissingDirectories(original.getParent(), journal);
+
+            infoFiles.add(info);
+            originals.add(original);
+            sources.add(trashed);
+            targets.add(names.reserve(original.getParent(), original.getFileName().toString(),
+                    NameReservationService.Style.SUFFIX));
+        }
+
+        if (sources.isEmpty()) return;
+
+        // chaque fiche est mise de côté dans le même lot que son fichier :
+        // undo la remet dans info/, replay la retire avec lui
+        int count = sources.size();
+        List<Path> planSources = new ArrayList<>(sources);
+        List<Path> planTargets = new ArrayList<>(targets);
+        for (Path info : infoFiles) {
+            planSources.add(info);
+            planTargets.add(staging.resolve(info.getFileName()));
+        }
+
+        long first = journal.plan(planSources, planTargets);
+
+        for (int i = 0; i < sources.size(); i++) {
+            Path source = sources.get(i);
+            Path target = targets.get(i);
+            try {
+                try {
+                    Files.move(source, target);
+                    journal.committed(first + i);
+                } catch (FileAlreadyExistsException e) {
+                    // créé entre-temps : nom suivant, journalisé seul
+                    journal.failed(first + i);
+                    Path original = originals.get(i);
+                    target = names.move(source, original.getParent(), original.getFileName().toString(),
+                            NameReservationService.Style.SUFFIX, journal);
+                }
+            } catch (NoSuchFileException e) {
+                journal.failed(first + i);
+                journal.failed(first + count + i);
+                System.err.println("Restore skipped (missing): " + source);
+                continue;
+            } catch (IOException e) {
+                names.release(target);
+                journal.failed(first + i);
+                journal.failed(first + count + i);
+                System.err.println("Restore failed: " + source + " (" + e.getMessage() + ")");
+                continue;
+            }
+
+            Path info = infoFiles.get(i);
+            try {
+                Files.move(info, planTargets.get(count + i), StandardCopyOption.REPLACE_EXISTING);
+                journal.committed(first + count + i);
+            } catch (IOException e) {
+                journal.failed(first + count + i);
+                System.err.println("Trash info not removed: " + info + " (" + e.getMessage() + ")");
+            }
+            restoredNames.add(source.getFileName().toString());
+            restored.incrementAndGet();
+
+            // une erreur du puits (écriture de la liste) arrête la restauration
+            sink.restored(target);
+        }
+    }
+
+    /** inscrit les dossiers manquants de {@code dir}, du plus haut au plus profond */
+    private static void recordMissingDirectories(Path dir, MoveJournal journal) {
+
+        if (dir == null || Files.isDirectory(dir)) return;
+
+        List<Path> missing = new ArrayList<>();
+        for (Path d = dir; d != null && !Files.isDirectory(d); d = d.getParent()) {
+            missing.add(d);
+        }
+        for (int i = missing.size() - 1; i >= 0; i--) {
+            journal.directoryCreated(missing.get(i));
+        }
+    }
+
+    /* =========================================================
+       FORMAT
+       ========================================================= */
+
+    /** chemin d'origine d'une fiche {@code .trashinfo} ; null sans clé {@code Path} */
+    Path originalPath(Path info) throws IOException {
+
+        boolean inSection = false;
+        for (String line : Files.readAllLines(info, StandardCharsets.UTF_8)) {
+            line = line.trim();
+            if (line.startsWith("[")) {
+                inSection = line.equals("[Trash Info]");
+            } else if (inSection && line.startsWith("Path=")) {
+                String path = percentDecode(line.substring("Path=".length()));
+                try {
+                    Path p = Paths.get(path);
+                    // relatif : depuis le dossier qui contient la corbeille
+                    return p.isAbsolute() ? p : trashDir.getParent().resolve(p).normalize();
+                } catch (InvalidPathException e) {
+                    throw new IOException("Invalid path: " + path);
+                }
+            }
+        }
+        return null;
+    }
+
+    /** décodage %XX octet par octet (UTF-8) ; '+' reste un '+' */
+    static String percentDecode(String s) {
+
+        if (s.indexOf('%') < 0) return s;
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(s.length());
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        for (int i = 0; i < bytes.length; i++) {
+            byte b = bytes[i];
+            if (b == '%' && i + 2 < bytes.length) {
+                int hi = Character.digit(bytes[i + 1], 16);
+                int lo = Character.digit(bytes[i + 2], 16);
+                if (hi >= 0 && lo >= 0) {
+                    out.write((hi << 4) | lo);
+                    i += 2;
+                    continue;
+                }
+            }
+            out.write(b);
+        }
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    /** retire de {@code directorysizes} (taille, mtime, nom encodé) les dossiers restaurés */
+    private void removeDirectorySizes(Set<String> restoredNames) {
+
+        Path sizes = trashDir.resolve("directorysizes");
+        if (restoredNames.isEmpty() || !Files.isRegularFile(sizes)) return;
+
+        try {
+            List<String> kept = new ArrayList<>();
+            for (String line : Files.readAllLines(sizes, StandardCharsets.UTF_8)) {
+                String[] fields = line.split(" ", 3);
+                if (fields.length == 3 && restoredNames.contains(percentDecode(fields[2]))) continue;
+                kept.add(line);
+            }
+
+            Path tmp = sizes.resolveSibling("directorysizes.tmp");
+            Files.write(tmp, kept, StandardCharsets.UTF_8);
+            Files.move(tmp, sizes, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        } catch (IOException e) {
+            System.err.println("directorysizes not updated: " + e.getMessage());
+        }
+    }
+}
@@ -1,32 +1,67 @@
 import sys
 from PIL import Image, ImageFile
 
+# 🔑 Autorise le chargement d’images partiellement corrompues
+ImageFile.LOAD_TRUNCATED_IMAGES = True
+
+
+def repair(input_path, output_path):
+    with Image.open(input_path) as img:
+        # Force le décodage COMPLET en mémoire
+        img.load()
+
+        # Gestion transparence (équivalent IrfanView)
+        if img.mode in ("RGBA", "LA", "P"):
+            background = Image.new("RGB", img.size, (255, 255, 255))
+            background.paste(img, mask=img.split()[-1] if img.mode != "RGB" else None)
+            img = background
+        else:
+            img = img.convert("RGB")
+
+        # Réenregistrement propre
+        img.save(output_path, "JPEG", quality=95, subsampling=0, optimize=True)
+
+
+def batch():
+    # Mode persistant : une ligne "<input>\t<output>" par travail sur stdin,
+    # une réponse "OK\t<output>" ou "ERR\t<message>" par ligne sur stdout.
+    # Fin du processus à la fermeture de stdin.
+    sys.stdin.reconfigure(encoding="utf-8")
+    sys.stdout.reconfigure(encoding="utf-8")
+
+    for line in sys.stdin:
+        line = line.rstrip("\r\n")
+        if not line:
+            continue
+
+        parts = line.split("\t")
+        if len(parts) != 2:
+            print("ERR\tinvalid job line", flush=True)
+            continue
+
+        try:
+            repair(parts[0], parts[1])
+            print(f"OK\t{parts[1]}", flush=True)
+        except Exception as e:
+            message = str(e).replace("\t", " ").replace("\n", " ")
+            print(f"ERR\t{message}", flush=True)
+
+
 def main():
+    if len(sys.argv) == 2 and sys.argv[1] == "--batch":
+        batch()
+        sys.exit(0)
+
     if len(sys.argv) != 3:
         print("Usage: png_to_jpg_repair.py <input.png> <output.jpg>")
+        print("       png_to_jpg_repair.py --batch   (jobs on stdin)")
         sys.exit(1)
 
     input_path = sys.argv[1]
     output_path = sys.argv[2]
 
-    # 🔑 Autorise le chargement d’images partiellement corrompues
-    ImageFile.LOAD_TRUNCATED_IMAGES = True
-
     try:
-        with Image.open(input_path) as img:
-            # Force le décodage COMPLET en mémoire
-            img.load()
-
-            # Gestion transparence (équivalent IrfanView)
-            if img.mode in ("RGBA", "LA", "P"):
-                background = Image.new("RGB", img.size, (255, 255, 255))
-                background.paste(img, mask=img.split()[-1] if img.mode != "RGB" else None)
-                img = background
-            else:
-                img = img.convert("RGB")
-
-            # Réenregistrement propre
-            img.save(output_path, "JPEG", quality=95, subsampling=0, optimize=True)
+        repair(input_path, output_path)
 
         print(f"SUCCESS: repaired -> {output_path}")
         sys.exit(0)
@@ -37,4 +72,4 @@ def main():
 
 
 if __name__ == "__main__":
-    main()
\ No newline at end of file
+    main()